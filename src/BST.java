@@ -1,21 +1,250 @@
 import java.util.Comparator;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
-
-public class BST<T> {
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A self-balancing (AVL) binary search tree. Every insert and remove rebalances
+ * the path it touched, so the height stays logarithmic in the number of nodes
+ * whatever order the data arrives in. Each node also stores the size of its
+ * subtree, which makes getSize() O(1) and lets select() and rank() find values
+ * by their position in order in O(log n). Range scans skip the subtrees that lie
+ * outside their bounds, so they cost O(log n) plus the number of values returned.
+ * The values can be iterated and streamed in order; traversals keep their own
+ * stack instead of recursing.
+ */
+public class BST<T> implements Iterable<T> {
     private class Node {
         private T data;
         private Node left;
         private Node right;
+        private int height;
+        private int size;
 
         public Node(T data) {
             this.data = data;
             left = null;
             right = null;
+            height = 0;
+            size = 1;
+        }
+    }
+
+    /**
+     * Iterates over the values in order, keeping the ancestors whose values have not
+     * been returned yet on a stack. The top of the stack is always the next value,
+     * so an upper bound is checked against it before it is returned.
+     */
+    private class InOrderIterator implements Iterator<T> {
+        private final ArrayList<Node> ancestors = new ArrayList<>(getHeight() + 1);
+        private final int expectedModCount = modCount;
+        private T high;
+        private boolean highInclusive;
+        private Comparator<T> cmp;
+
+        private InOrderIterator() {
+            pushLeftSpine(root, ancestors);
+        }
+
+        /**
+         * Creates an iterator over the values within bounds, stacking only the ancestors
+         * that are not below the lower bound
+         * @param low the lower bound, or null for none
+         * @param lowInclusive whether values equal to low are included
+         * @param high the upper bound, or null for none
+         * @param highInclusive whether values equal to high are included
+         * @param cmp the Comparator that indicates the way the data in the tree was ordered
+         */
+        private InOrderIterator(T low, boolean lowInclusive, T high, boolean highInclusive, Comparator<T> cmp) {
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.cmp = cmp;
+
+            Node node = root;
+
+            while (node != null) {
+                if (low == null || isAbove(node.data, low, lowInclusive, cmp)) {
+                    ancestors.add(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        /**
+         * Creates an iterator that starts at a position, stacking only the ancestors the
+         * descent to that position passes on the left
+         * @param index the position of the first value to return
+         */
+        private InOrderIterator(int index) {
+            Node node = root;
+
+            while (node != null) {
+                int leftSize = size(node.left);
+
+                if (index <= leftSize) {
+                    ancestors.add(node);
+
+                    if (index == leftSize) {
+                        return;
+                    }
+
+                    node = node.left;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ancestors.isEmpty()) {
+                return false;
+            }
+
+            return high == null || isAbove(high, ancestors.get(ancestors.size() - 1).data, highInclusive, cmp);
+        }
+
+        @Override
+        public T next() throws NoSuchElementException, ConcurrentModificationException {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("next(): BST was changed during iteration");
+            }
+
+            if (!hasNext()) {
+                throw new NoSuchElementException("next(): no more values in BST");
+            }
+
+            Node node = ancestors.remove(ancestors.size() - 1);
+            pushLeftSpine(node.right, ancestors);
+            return node.data;
+        }
+    }
+
+    /**
+     * Splits the in-order sequence by subtree. The values still to come are those of an
+     * unstarted subtree, followed by each ancestor on the stack from the top down, each
+     * ancestor's value being followed by its right subtree. Splitting hands off the left
+     * subtree of the unstarted subtree, or every ancestor but the bottom one, so each
+     * half is about the same size in a balanced tree. Subtree sizes keep the size of
+     * each half exact.
+     */
+    private class InOrderSpliterator implements Spliterator<T> {
+        private Node subtree;
+        private final ArrayList<Node> ancestors;
+        private boolean bottomWithoutRight;
+        private long remaining;
+        private final int expectedModCount;
+
+        /**
+         * Creates an InOrderSpliterator
+         * @param subtree the subtree to traverse before the ancestors, or null
+         * @param ancestors the ancestors, bottom first
+         * @param bottomWithoutRight whether the bottom ancestor's right subtree is left to another spliterator
+         * @param remaining the number of values
+         * @param expectedModCount the modification count the tree must keep
+         */
+        private InOrderSpliterator(Node subtree, ArrayList<Node> ancestors, boolean bottomWithoutRight, long remaining,
+                int expectedModCount) {
+            this.subtree = subtree;
+            this.ancestors = ancestors;
+            this.bottomWithoutRight = bottomWithoutRight;
+            this.remaining = remaining;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) throws ConcurrentModificationException {
+            if (subtree != null) {
+                pushLeftSpine(subtree, ancestors);
+                subtree = null;
+            }
+
+            if (ancestors.isEmpty()) {
+                return false;
+            }
+
+            Node node = ancestors.remove(ancestors.size() - 1);
+            if (!ancestors.isEmpty() || !bottomWithoutRight) {
+                pushLeftSpine(node.right, ancestors);
+            }
+
+            remaining--;
+            action.accept(node.data);
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException("tryAdvance(): BST was changed during traversal");
+            }
+
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (subtree != null) {
+                Node top = subtree;
+                subtree = null;
+                ancestors.add(top);
+
+                if (top.left != null) {
+                    return split(top.left, new ArrayList<>(), false, size(top.left));
+                }
+            }
+
+            if (ancestors.size() > 1) {
+                Node bottom = ancestors.get(0);
+                ArrayList<Node> above = new ArrayList<>(ancestors.subList(1, ancestors.size()));
+                ancestors.subList(1, ancestors.size()).clear();
+                return split(null, above, false, remaining - 1 - (bottomWithoutRight ? 0 : size(bottom.right)));
+            }
+
+            if (ancestors.size() == 1 && !bottomWithoutRight && ancestors.get(0).right != null) {
+                Node bottom = ancestors.remove(0);
+                subtree = bottom.right;
+
+                ArrayList<Node> alone = new ArrayList<>(1);
+                alone.add(bottom);
+                return split(null, alone, true, 1);
+            }
+
+            return null;
+        }
+
+        /**
+         * Hands off the start of the remaining values to a new spliterator
+         * @param prefixSubtree the new spliterator's unstarted subtree, or null
+         * @param prefixAncestors the new spliterator's ancestors, bottom first
+         * @param prefixBottomWithoutRight whether the new spliterator leaves out its bottom ancestor's right subtree
+         * @param prefixSize the number of values handed off
+         * @return the new spliterator
+         */
+        private Spliterator<T> split(Node prefixSubtree, ArrayList<Node> prefixAncestors, boolean prefixBottomWithoutRight,
+                long prefixSize) {
+            remaining -= prefixSize;
+            return new InOrderSpliterator(prefixSubtree, prefixAncestors, prefixBottomWithoutRight, prefixSize, expectedModCount);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
         }
     }
 
     private Node root;
+    private int modCount;
 
     // **** CONSTRUCTORS **** //
     /**
@@ -63,6 +292,7 @@ public class BST<T> {
 
         node.left = arrayHelper(begin, mid - 1, array);
         node.right = arrayHelper(mid + 1, end, array);
+        update(node);
 
         return node;
     }
@@ -117,23 +347,16 @@ public class BST<T> {
      * @return the height of the tree
      */
     public int getHeight() {
-        return getHeight(root);
+        return height(root);
     }
 
     /**
-     * Helper method for getHeight().
-     * @param node the current node whose height to count
-     * @return the height of the tree
+     * Returns the stored height of a subtree.
+     * @param node the root of the subtree
+     * @return the height of the subtree, or -1 if it is empty
      */
-    private int getHeight(Node node) {
-        if (node == null) {
-            return -1;
-        }
-
-        int leftHeight = getHeight(node.left);
-        int rightHeight = getHeight(node.right);
-
-        return Math.max(leftHeight, rightHeight) + 1;
+    private int height(Node node) {
+        return node == null ? -1 : node.height;
     }
 
     /**
@@ -176,20 +399,126 @@ public class BST<T> {
      * @return the size of the tree.
      */
     public int getSize() {
-        return getSize(root);
+        return size(root);
     }
 
     /**
-     * Helper method for the getSize() method.
-     * @param node the current node to count.
-     * @return the size of the tree.
+     * Returns the stored size of a subtree.
+     * @param node the root of the subtree
+     * @return the number of nodes in the subtree
      */
-    private int getSize(Node node) {
-        if (node == null) {
-            return 0;
+    private int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Returns the value at a position in order.
+     * @precondition 0 <= index < getSize()
+     * @param index the position, counting from 0
+     * @return the value with index smaller values before it
+     * @throws IndexOutOfBoundsException when the precondition is violated
+     */
+    public T select(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= getSize()) {
+            throw new IndexOutOfBoundsException("select(): index " + index + " is out of bounds for size " + getSize());
+        }
+
+        Node node = root;
+
+        while (true) {
+            int leftSize = size(node.left);
+
+            if (index == leftSize) {
+                return node.data;
+            }
+
+            if (index < leftSize) {
+                node = node.left;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Counts the values that come before a value in order. The value need not be in the tree.
+     * @param data the value
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @return the number of values smaller than data, which is the position data has or would have
+     */
+    public int rank(T data, Comparator<T> cmp) {
+        return countBefore(data, false, cmp);
+    }
+
+    /**
+     * Counts the values that come before a value in order, and optionally the values equal to it.
+     * @param data the value
+     * @param inclusive whether to count values equal to data
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @return the number of values smaller than data, or not larger than data if inclusive
+     */
+    private int countBefore(T data, boolean inclusive, Comparator<T> cmp) {
+        Node node = root;
+        int count = 0;
+
+        while (node != null) {
+            if (isAbove(data, node.data, inclusive, cmp)) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
         }
 
-        return 1 + getSize(node.left) + getSize(node.right);
+        return count;
+    }
+
+    /**
+     * Counts the values within bounds in O(log n), without visiting them.
+     * @param low the lower bound, or null for none
+     * @param lowInclusive whether values equal to low are counted
+     * @param high the upper bound, or null for none
+     * @param highInclusive whether values equal to high are counted
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @return the number of values within the bounds
+     * @throws IllegalArgumentException when low is greater than high
+     */
+    public int countRange(T low, boolean lowInclusive, T high, boolean highInclusive, Comparator<T> cmp)
+            throws IllegalArgumentException {
+        checkRange(low, high, cmp, "countRange()");
+
+        int end = high == null ? getSize() : countBefore(high, highInclusive, cmp);
+        int start = low == null ? 0 : countBefore(low, !lowInclusive, cmp);
+
+        return Math.max(0, end - start);
+    }
+
+    /**
+     * Determines whether one value comes after another, or equals it if equality is allowed.
+     * @param data the value to check
+     * @param bound the value to check against
+     * @param inclusive whether a value equal to bound counts
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @return whether data is greater than bound, or equal to it if inclusive
+     */
+    private boolean isAbove(T data, T bound, boolean inclusive, Comparator<T> cmp) {
+        int comparison = cmp.compare(data, bound);
+        return comparison > 0 || (inclusive && comparison == 0);
+    }
+
+    /**
+     * Checks that the lower bound of a range is not greater than the upper bound.
+     * @param low the lower bound, or null for none
+     * @param high the upper bound, or null for none
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @param method the name of the method checking, for the exception message
+     * @throws IllegalArgumentException when low is greater than high
+     */
+    private void checkRange(T low, T high, Comparator<T> cmp, String method) throws IllegalArgumentException {
+        if (low != null && high != null && cmp.compare(low, high) > 0) {
+            throw new IllegalArgumentException(method + ": lower bound is greater than upper bound");
+        }
     }
 
     /**
@@ -261,11 +590,8 @@ public class BST<T> {
      * @param cmp the Comparator indicating how much data in the tree is ordered
      */
     public void insert(T data, Comparator<T> cmp) {
-        if (root == null) {
-            root = new Node(data);
-        } else {
-            insert(data, root, cmp);
-        }
+        modCount++;
+        root = insert(data, root, cmp);
     }
 
     /**
@@ -274,21 +600,20 @@ public class BST<T> {
      * @param data the data to insert
      * @param node the current node
      * @param cmp the Comparator indicating how much data in the tree is ordered
+     * @return the root of the rebalanced subtree
      */
-    private void insert(T data, Node node, Comparator<T> cmp) {
+    private Node insert(T data, Node node, Comparator<T> cmp) {
+        if (node == null) {
+            return new Node(data);
+        }
+
         if (cmp.compare(data, node.data) > 0) {
-            if (node.right == null) {
-                node.right = new Node(data);
-            } else {
-                insert(data, node.right, cmp);
-            }
+            node.right = insert(data, node.right, cmp);
         } else {
-            if (node.left == null) {
-                node.left = new Node(data);
-            } else {
-                insert(data, node.left, cmp);
-            }
+            node.left = insert(data, node.left, cmp);
         }
+
+        return rebalance(node);
     }
 
     /**
@@ -303,7 +628,13 @@ public class BST<T> {
             throw new NoSuchElementException("remove(): BST is empty");
         }
 
+        int sizeBefore = getSize();
         root = remove(data, root, cmp);
+
+        // Only an actual unlink invalidates iterators; a miss leaves the tree as it was
+        if (getSize() != sizeBefore) {
+            modCount++;
+        }
     }
 
     /**
@@ -318,33 +649,119 @@ public class BST<T> {
             return node;
         }
 
-        if (cmp.compare(data, node.data) < 0) {
+        int comparison = cmp.compare(data, node.data);
+
+        if (comparison < 0) {
             node.left = remove(data, node.left, cmp);
-        } else if (cmp.compare(data, node.data) > 0) {
+        } else if (comparison > 0) {
             node.right = remove(data, node.right, cmp);
         } else {
             if (node.left == null && node.right == null) {
-                node = null;
+                return null;
             } else if (node.right == null) {
-                node = node.left;
+                return node.left;
             } else if (node.left == null) {
-                node = node.right;
+                return node.right;
             } else {
-                T min = findMin(node.right);
-                node.data = min;
-                node.right = remove(min, node.right, cmp);
+                node.data = findMin(node.right);
+                node.right = removeMin(node.right);
+            }
+        }
+
+        return rebalance(node);
+    }
+
+    /**
+     * Removes the smallest node of a subtree.
+     * Helper method for remove().
+     * @param node the root of the subtree
+     * @return the root of the rebalanced subtree
+     */
+    private Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+
+        node.left = removeMin(node.left);
+        return rebalance(node);
+    }
+
+    /**
+     * Recomputes the height and subtree size of a node from its children.
+     * @param node the node to update
+     */
+    private void update(Node node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    /**
+     * Restores the AVL property at a node whose subtrees differ in height by at most two.
+     * @param node the node to rebalance
+     * @return the new root of the subtree
+     */
+    private Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
             }
+
+            return rotateRight(node);
+        }
+
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+
+            return rotateLeft(node);
         }
 
         return node;
     }
 
+    /**
+     * Rotates a subtree to the right, lifting its left child.
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+
+        update(node);
+        update(pivot);
+
+        return pivot;
+    }
+
+    /**
+     * Rotates a subtree to the left, lifting its right child.
+     * @param node the root of the subtree
+     * @return the new root of the subtree
+     */
+    private Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+
+        update(node);
+        update(pivot);
+
+        return pivot;
+    }
+
     /**
      * Rebuilds the BST with a new Comparator
      * @param cmp the Comparator indicating how the data in the tree is organized
      */
     public void rebuild(Comparator<T> cmp) {
         BST<T> newBST = new BST<>(this, cmp);
+        modCount++;
         this.root = newBST.root;
     }
 
@@ -370,29 +787,129 @@ public class BST<T> {
     }
 
     /**
-     * Returns a String containing the data in order
-     * @return a String containing the data in order
+     * Returns an iterator over the values in order. The iterator only needs O(height)
+     * memory and fails if the tree is changed other than through it.
+     * @return the iterator
      */
-    public String inOrderString() {
-        StringBuilder str = new StringBuilder();
+    @Override
+    public Iterator<T> iterator() {
+        return new InOrderIterator();
+    }
 
-        inOrderString(root, str);
+    /**
+     * Returns an iterator over the values in order that starts at a position, so a page
+     * of values costs O(log n) to find plus O(1) amortized per value.
+     * @precondition 0 <= index <= getSize()
+     * @param index the position of the first value, counting from 0
+     * @return the iterator
+     * @throws IndexOutOfBoundsException when the precondition is violated
+     */
+    public Iterator<T> iterator(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index > getSize()) {
+            throw new IndexOutOfBoundsException("iterator(): index " + index + " is out of bounds for size " + getSize());
+        }
 
-        return str.toString();
+        return new InOrderIterator(index);
     }
 
     /**
-     * Helper method for inOrderString
-     * @param node the current node
-     * @param inOrder a StringBuilder containing the data
+     * Returns an iterator over the values within bounds, in order. Subtrees below the
+     * lower bound are skipped and iteration stops at the first value past the upper
+     * bound, so the scan costs O(log n) plus the number of values returned.
+     * @param low the lower bound, or null for none
+     * @param lowInclusive whether values equal to low are included
+     * @param high the upper bound, or null for none
+     * @param highInclusive whether values equal to high are included
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @return the iterator
+     * @throws IllegalArgumentException when low is greater than high
      */
-    private void inOrderString(Node node, StringBuilder inOrder) {
-        if (node == null) {
-            return;
+    public Iterator<T> rangeIterator(T low, boolean lowInclusive, T high, boolean highInclusive, Comparator<T> cmp)
+            throws IllegalArgumentException {
+        checkRange(low, high, cmp, "rangeIterator()");
+        return new InOrderIterator(low, lowInclusive, high, highInclusive, cmp);
+    }
+
+    /**
+     * Returns a sequential stream of the values within bounds, in order. See rangeIterator().
+     * @param low the lower bound, or null for none
+     * @param lowInclusive whether values equal to low are included
+     * @param high the upper bound, or null for none
+     * @param highInclusive whether values equal to high are included
+     * @param cmp the Comparator that indicates the way the data in the tree was ordered
+     * @return the stream
+     * @throws IllegalArgumentException when low is greater than high
+     */
+    public Stream<T> rangeStream(T low, boolean lowInclusive, T high, boolean highInclusive, Comparator<T> cmp)
+            throws IllegalArgumentException {
+        Iterator<T> values = rangeIterator(low, lowInclusive, high, highInclusive, cmp);
+        int count = countRange(low, lowInclusive, high, highInclusive, cmp);
+
+        return StreamSupport.stream(Spliterators.spliterator(values, count, Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Returns a spliterator over the values in order that splits the tree by subtree
+     * @return the spliterator
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new InOrderSpliterator(root, new ArrayList<>(getHeight() + 1), false, getSize(), modCount);
+    }
+
+    /**
+     * Returns a sequential stream of the values in order
+     * @return the stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of the values, which keeps their order where the stream's
+     * operations need it
+     * @return the stream
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Passes every value to an action in order. The walk keeps its own stack of
+     * ancestors instead of recursing, so it needs only O(height) memory.
+     * @param action the action to perform on each value
+     */
+    public void forEachInOrder(Consumer<? super T> action) {
+        ArrayList<Node> ancestors = new ArrayList<>(getHeight() + 1);
+        pushLeftSpine(root, ancestors);
+
+        while (!ancestors.isEmpty()) {
+            Node node = ancestors.remove(ancestors.size() - 1);
+            action.accept(node.data);
+            pushLeftSpine(node.right, ancestors);
+        }
+    }
+
+    /**
+     * Pushes a node and its chain of left children onto a stack
+     * @param node the first node to push, or null to push nothing
+     * @param ancestors the stack, top last
+     */
+    private void pushLeftSpine(Node node, ArrayList<Node> ancestors) {
+        for (; node != null; node = node.left) {
+            ancestors.add(node);
         }
+    }
 
-        inOrderString(node.left, inOrder);
-        inOrder.append(node.data).append("\n");
-        inOrderString(node.right, inOrder);
+    /**
+     * Returns a String containing the data in order
+     * @return a String containing the data in order
+     */
+    public String inOrderString() {
+        StringBuilder str = new StringBuilder();
+
+        forEachInOrder(data -> str.append(data).append("\n"));
+
+        return str.toString();
     }
 }
@@ -0,0 +1,473 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The songs in the database, kept in a BST by title and in a secondary BST for each of
+ * album, release year, length, and plays, so lookups by any of them cost O(log n) plus
+ * the number of songs found. Songs must be added, removed, and changed through the
+ * Catalog so every index stays in step.
+ *
+ * Each index orders songs by its field and then by the order they were added, so no
+ * two songs tie and removing a song removes exactly that song. The songs are also kept
+ * in a BST by the order they were added alone, so that order can be listed and a song
+ * removed from it in O(log n) as well. Lookups use a Comparator
+ * of the field alone, which is consistent with that order, so every song with a field
+ * in range is found by one range scan. Running statistics are kept up to date the same way.
+ */
+public class Catalog {
+    private final BST<Song> songs;
+    private final Comparator<Song> additionOrder;
+    private final IdentityHashMap<Song, Long> serials;
+    private final BST<Song> titles;
+    private final Comparator<Song> titleOrder;
+    private final Index<String> albums;
+    private final Index<Integer> years;
+    private final Index<Integer> lengths;
+    private final Index<Long> plays;
+    private final CatalogStatistics statistics;
+    private long nextSerial;
+
+    /**
+     * A secondary index on one field of the songs
+     * @param <K> the type of the field
+     */
+    private class Index<K> {
+        private final BST<Song> tree;
+        private final Comparator<Song> order;
+        private final Comparator<Song> fieldOrder;
+        private final Comparator<K> keyOrder;
+        private final BiConsumer<Song, K> setter;
+
+        /**
+         * Creates an empty Index
+         * @param getter reads the field from a song
+         * @param setter writes the field of a probe song used as a bound
+         * @param keyOrder the order of the field's values
+         */
+        private Index(Function<Song, K> getter, BiConsumer<Song, K> setter, Comparator<K> keyOrder) {
+            this.tree = new BST<>();
+            this.fieldOrder = Comparator.comparing(getter, keyOrder);
+            this.order = fieldOrder.thenComparingLong(Catalog.this::serial);
+            this.keyOrder = keyOrder;
+            this.setter = setter;
+        }
+
+        /**
+         * Counts the songs whose field is within bounds
+         * @param low the lowest value, or null for none
+         * @param high the highest value, or null for none
+         * @return the number of songs, which is 0 if low is greater than high
+         */
+        private int count(K low, K high) {
+            if (isEmptyRange(low, high)) {
+                return 0;
+            }
+
+            return tree.countRange(probe(low), true, probe(high), true, fieldOrder);
+        }
+
+        /**
+         * Streams the songs whose field is within bounds, in field order
+         * @param low the lowest value, or null for none
+         * @param high the highest value, or null for none
+         * @return the songs, which are none if low is greater than high
+         */
+        private Stream<Song> range(K low, K high) {
+            if (isEmptyRange(low, high)) {
+                return Stream.empty();
+            }
+
+            return tree.rangeStream(probe(low), true, probe(high), true, fieldOrder);
+        }
+
+        /**
+         * Determines whether bounds leave no values between them
+         * @param low the lowest value, or null for none
+         * @param high the highest value, or null for none
+         * @return whether low is greater than high
+         */
+        private boolean isEmptyRange(K low, K high) {
+            return low != null && high != null && keyOrder.compare(low, high) > 0;
+        }
+
+        /**
+         * Makes a song whose field has a value, to compare songs against
+         * @param value the value, or null for no bound
+         * @return the song, or null for no bound
+         */
+        private Song probe(K value) {
+            if (value == null) {
+                return null;
+            }
+
+            Song song = new Song("");
+            setter.accept(song, value);
+            return song;
+        }
+    }
+
+    /**
+     * Conditions on the indexed fields of a song. Every bound is inclusive, and a
+     * condition that is never set matches every song.
+     */
+    public static class Filter {
+        private String album;
+        private Integer fromYear;
+        private Integer toYear;
+        private Integer minLength;
+        private Integer maxLength;
+        private Long minPlays;
+        private Long maxPlays;
+
+        /**
+         * Matches only songs on an album, ignoring case
+         * @param album the album name
+         * @return this Filter
+         */
+        public Filter album(String album) {
+            this.album = album;
+            return this;
+        }
+
+        /**
+         * Matches only songs released in a span of years
+         * @param fromYear the earliest year, or null for no limit
+         * @param toYear the latest year, or null for no limit
+         * @return this Filter
+         */
+        public Filter years(Integer fromYear, Integer toYear) {
+            this.fromYear = fromYear;
+            this.toYear = toYear;
+            return this;
+        }
+
+        /**
+         * Matches only songs whose length is in a range
+         * @param minLength the shortest length in seconds, or null for no limit
+         * @param maxLength the longest length in seconds, or null for no limit
+         * @return this Filter
+         */
+        public Filter length(Integer minLength, Integer maxLength) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Matches only songs whose play count is in a range
+         * @param minPlays the fewest plays, or null for no limit
+         * @param maxPlays the most plays, or null for no limit
+         * @return this Filter
+         */
+        public Filter plays(Long minPlays, Long maxPlays) {
+            this.minPlays = minPlays;
+            this.maxPlays = maxPlays;
+            return this;
+        }
+
+        /**
+         * Determines whether a song meets every condition
+         * @param song the song
+         * @return whether the song matches
+         */
+        public boolean matches(Song song) {
+            return (album == null || album.equalsIgnoreCase(song.getAlbum()))
+                    && within(song.getReleaseYear(), fromYear, toYear)
+                    && within(song.getLength(), minLength, maxLength)
+                    && within(song.getPlays(), minPlays, maxPlays);
+        }
+
+        /**
+         * Determines whether a value is within optional bounds
+         * @param value the value
+         * @param low the lowest value allowed, or null for none
+         * @param high the highest value allowed, or null for none
+         * @return whether the value is within the bounds
+         */
+        private static boolean within(long value, Number low, Number high) {
+            return (low == null || value >= low.longValue()) && (high == null || value <= high.longValue());
+        }
+    }
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates an empty Catalog
+     */
+    public Catalog() {
+        this.songs = new BST<>();
+        this.additionOrder = Comparator.comparingLong(this::serial);
+        this.serials = new IdentityHashMap<>();
+        this.titles = new BST<>();
+        this.titleOrder = new TitleComparator().thenComparingLong(this::serial);
+        this.albums = new Index<>(Song::getAlbum, Song::setAlbum, String.CASE_INSENSITIVE_ORDER);
+        this.years = new Index<>(Song::getReleaseYear, Song::setReleaseYear, Comparator.naturalOrder());
+        this.lengths = new Index<>(Song::getLength, Song::setLength, Comparator.naturalOrder());
+        this.plays = new Index<>(Song::getPlays, Song::setPlays, Comparator.naturalOrder());
+        this.statistics = new CatalogStatistics(plays.tree);
+        this.nextSerial = 0;
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the number of songs
+     * @return the number of songs
+     */
+    public int size() {
+        return songs.getSize();
+    }
+
+    /**
+     * Determines whether there are no songs
+     * @return whether the Catalog is empty
+     */
+    public boolean isEmpty() {
+        return songs.isEmpty();
+    }
+
+    /**
+     * Determines whether a song is in the Catalog
+     * @param song the song
+     * @return whether that exact song was added and not removed
+     */
+    public boolean contains(Song song) {
+        return serials.containsKey(song);
+    }
+
+    /**
+     * Returns the songs in the order they were added
+     * @return a new list of the songs
+     */
+    public ArrayList<Song> getSongs() {
+        ArrayList<Song> list = new ArrayList<>(size());
+        songs.forEachInOrder(list::add);
+        return list;
+    }
+
+    /**
+     * Returns the running statistics, which stay current as songs are added, removed, and changed
+     * @return the statistics
+     */
+    public CatalogStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the songs ordered by title. Songs with the same title are in the order they
+     * were added. The tree can be searched and scanned with a TitleComparator, but must
+     * not be changed except through the Catalog.
+     * @return the title index
+     */
+    public BST<Song> getTitleIndex() {
+        return titles;
+    }
+
+    /**
+     * Finds the songs on an album, ignoring case
+     * @param album the album name
+     * @return the songs, in the order they were added
+     */
+    public Stream<Song> findByAlbum(String album) {
+        return albums.range(album, album);
+    }
+
+    /**
+     * Finds the songs released in a span of years
+     * @param fromYear the earliest year, or null for no limit
+     * @param toYear the latest year, or null for no limit
+     * @return the songs, ordered by year
+     */
+    public Stream<Song> findByYear(Integer fromYear, Integer toYear) {
+        return years.range(fromYear, toYear);
+    }
+
+    /**
+     * Finds the songs whose length is in a range
+     * @param minLength the shortest length in seconds, or null for no limit
+     * @param maxLength the longest length in seconds, or null for no limit
+     * @return the songs, ordered by length
+     */
+    public Stream<Song> findByLength(Integer minLength, Integer maxLength) {
+        return lengths.range(minLength, maxLength);
+    }
+
+    /**
+     * Finds the songs whose play count is in a range
+     * @param minPlays the fewest plays, or null for no limit
+     * @param maxPlays the most plays, or null for no limit
+     * @return the songs, ordered by plays
+     */
+    public Stream<Song> findByPlays(Long minPlays, Long maxPlays) {
+        return plays.range(minPlays, maxPlays);
+    }
+
+    /**
+     * Returns the most-played songs, read from the end of the play count index, so the
+     * chart costs O(log n + count) and stays current as play counts change
+     * @param count the number of songs to return
+     * @return the songs, most plays first
+     * @throws IllegalArgumentException when count is negative
+     */
+    public ArrayList<Song> getMostPlayed(int count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("getMostPlayed(): count cannot be negative");
+        }
+
+        ArrayList<Song> top = new ArrayList<>(Math.min(count, size()));
+        Iterator<Song> ascending = plays.tree.iterator(Math.max(0, size() - count));
+
+        while (ascending.hasNext()) {
+            top.add(ascending.next());
+        }
+
+        Collections.reverse(top);
+        return top;
+    }
+
+    /**
+     * Finds the songs that meet every condition of a filter. Each constrained index counts
+     * its matches in O(log n), then only the smallest of those ranges is scanned and its
+     * songs are checked against the other conditions.
+     * @param filter the conditions
+     * @return the matching songs, ordered by title
+     */
+    public ArrayList<Song> find(Filter filter) {
+        Stream<Song> candidates = titles.stream();
+        int fewest = size();
+
+        if (filter.album != null) {
+            int count = albums.count(filter.album, filter.album);
+
+            if (count < fewest) {
+                fewest = count;
+                candidates = albums.range(filter.album, filter.album);
+            }
+        }
+
+        if (filter.fromYear != null || filter.toYear != null) {
+            int count = years.count(filter.fromYear, filter.toYear);
+
+            if (count < fewest) {
+                fewest = count;
+                candidates = years.range(filter.fromYear, filter.toYear);
+            }
+        }
+
+        if (filter.minLength != null || filter.maxLength != null) {
+            int count = lengths.count(filter.minLength, filter.maxLength);
+
+            if (count < fewest) {
+                fewest = count;
+                candidates = lengths.range(filter.minLength, filter.maxLength);
+            }
+        }
+
+        if ((filter.minPlays != null || filter.maxPlays != null) && plays.count(filter.minPlays, filter.maxPlays) < fewest) {
+            candidates = plays.range(filter.minPlays, filter.maxPlays);
+        }
+
+        ArrayList<Song> matches = new ArrayList<>();
+        candidates.filter(filter::matches).forEach(matches::add);
+        matches.sort(titleOrder);
+        return matches;
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Adds a song to the Catalog and every index
+     * @param song the song to add
+     * @throws IllegalArgumentException when the song is already in the Catalog
+     */
+    public void add(Song song) throws IllegalArgumentException {
+        if (contains(song)) {
+            throw new IllegalArgumentException("add(): song is already in the Catalog");
+        }
+
+        serials.put(song, nextSerial++);
+        songs.insert(song, additionOrder);
+        insert(song);
+    }
+
+    /**
+     * Removes a song from the Catalog and every index
+     * @param song the song to remove
+     * @return whether the song was in the Catalog
+     */
+    public boolean remove(Song song) {
+        if (!contains(song)) {
+            return false;
+        }
+
+        // The serial number finds this exact song, even among equal ones, so it is dropped last
+        delete(song);
+        songs.remove(song, additionOrder);
+        serials.remove(song);
+
+        return true;
+    }
+
+    /**
+     * Changes a song and moves it to its new place in every index. The song is taken out
+     * of the indexes while it is changed and put back even if the change fails.
+     * @param song the song to change
+     * @param change the change to make
+     * @throws NoSuchElementException when the song is not in the Catalog
+     */
+    public void modify(Song song, Consumer<Song> change) throws NoSuchElementException {
+        if (!contains(song)) {
+            throw new NoSuchElementException("modify(): song is not in the Catalog");
+        }
+
+        delete(song);
+
+        try {
+            change.accept(song);
+        } finally {
+            insert(song);
+        }
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Inserts a song into the title index, every secondary index, and the statistics
+     * @param song the song, which has a serial number
+     */
+    private void insert(Song song) {
+        statistics.add(song);
+        titles.insert(song, titleOrder);
+        albums.tree.insert(song, albums.order);
+        years.tree.insert(song, years.order);
+        lengths.tree.insert(song, lengths.order);
+        plays.tree.insert(song, plays.order);
+    }
+
+    /**
+     * Deletes a song from the title index, every secondary index, and the statistics.
+     * The song's fields must not have changed since it was inserted.
+     * @param song the song, which has a serial number
+     */
+    private void delete(Song song) {
+        statistics.remove(song);
+        titles.remove(song, titleOrder);
+        albums.tree.remove(song, albums.order);
+        years.tree.remove(song, years.order);
+        lengths.tree.remove(song, lengths.order);
+        plays.tree.remove(song, plays.order);
+    }
+
+    /**
+     * Returns the number a song was given when it was added, which breaks ties in every index
+     * @param song the song
+     * @return the serial number
+     */
+    private long serial(Song song) {
+        return serials.get(song);
+    }
+}
@@ -0,0 +1,298 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Generates a synthetic catalog for benchmarks and load tests. The same seed always
+ * produces the same songs, so results can be reproduced on any machine. Lyric words are
+ * drawn from a made-up vocabulary with Zipf's law, like the words of a natural language:
+ * the k-th most common word turns up about 1/k as often as the most common one, and common
+ * words are short. Each song repeats a chorus between its verses and takes its title from
+ * the chorus. Songs come in albums of 8 to 16 tracks sharing a release year, and play
+ * counts are log-normal, mostly modest with a long tail of hits that follow their album's
+ * popularity. Songs are generated one at a time, so catalogs of millions of songs can be
+ * written without holding them in memory.
+ * Usage: java CatalogGenerator numSongs file [seed] [vocabularySize] [wordsPerSong]
+ */
+public class CatalogGenerator implements Iterator<Song> {
+    private static final String CONSONANTS = "bcdfghjklmnprstvwz";
+    private static final String VOWELS = "aeiou";
+    private static final int MIN_ALBUM_SIZE = 8;
+    private static final int MAX_ALBUM_SIZE = 16;
+    private static final int LATEST_YEAR = 2025;
+    private static final double MEDIAN_PLAYS = 50000;
+    private static final double ALBUM_PLAYS_SIGMA = 2.0;
+    private static final double TRACK_PLAYS_SIGMA = 0.8;
+
+    private final int numSongs;
+    private final int wordsPerSong;
+    private final Random random;
+    private final String[] vocabulary;
+    private final double[] keepProbabilities;
+    private final int[] aliases;
+    private int generated;
+
+    private String album;
+    private int albumYear;
+    private double albumPlays;
+    private int tracksLeft;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates a CatalogGenerator with a 20,000-word vocabulary and 200 words per song
+     * @param numSongs the number of songs to generate
+     * @param seed the seed that determines the songs
+     * @throws IllegalArgumentException when numSongs is negative
+     */
+    public CatalogGenerator(int numSongs, long seed) throws IllegalArgumentException {
+        this(numSongs, seed, 20000, 200);
+    }
+
+    /**
+     * Creates a CatalogGenerator
+     * @param numSongs the number of songs to generate
+     * @param seed the seed that determines the songs
+     * @param vocabularySize the number of distinct lyric words
+     * @param wordsPerSong the number of words in each song's lyrics
+     * @throws IllegalArgumentException when numSongs is negative, or vocabularySize or wordsPerSong is not positive
+     */
+    public CatalogGenerator(int numSongs, long seed, int vocabularySize, int wordsPerSong) throws IllegalArgumentException {
+        if (numSongs < 0 || vocabularySize <= 0 || wordsPerSong <= 0) {
+            throw new IllegalArgumentException("CatalogGenerator needs a song count of at least 0 and a positive vocabulary and song length");
+        }
+
+        this.numSongs = numSongs;
+        this.wordsPerSong = wordsPerSong;
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        this.keepProbabilities = new double[vocabularySize];
+        this.aliases = new int[vocabularySize];
+        this.generated = 0;
+        this.tracksLeft = 0;
+
+        double harmonic = 0;
+        for (int rank = 0; rank < vocabularySize; rank++) {
+            vocabulary[rank] = wordOfRank(rank);
+            harmonic += 1.0 / (rank + 1);
+        }
+
+        buildAliasTable(harmonic);
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Determines whether there are songs left to generate
+     * @return whether fewer than numSongs songs have been generated
+     */
+    @Override
+    public boolean hasNext() {
+        return generated < numSongs;
+    }
+
+    /**
+     * Returns the number of songs generated so far
+     * @return the number of songs
+     */
+    public int getGenerated() {
+        return generated;
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Generates the next song
+     * @precondition hasNext()
+     * @return the song
+     * @throws NoSuchElementException when the precondition is violated
+     */
+    @Override
+    public Song next() throws NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next(): all " + numSongs + " songs have been generated");
+        }
+
+        if (tracksLeft == 0) {
+            startAlbum();
+        }
+
+        tracksLeft--;
+        generated++;
+
+        String[] chorus = new String[Math.max(1, Math.min(12, wordsPerSong / 5))];
+        for (int i = 0; i < chorus.length; i++) {
+            chorus[i] = nextWord();
+        }
+
+        // Verses of fresh words alternate with the chorus until the song is long enough
+        StringBuilder lyrics = new StringBuilder();
+        for (int words = 0, position = 0; words < wordsPerSong; words++, position++) {
+            boolean inChorus = (position / chorus.length) % 2 == 1;
+
+            if (words > 0) {
+                lyrics.append(' ');
+            }
+
+            lyrics.append(inChorus ? chorus[position % chorus.length] : nextWord());
+        }
+
+        int titleStart = random.nextInt(chorus.length);
+        int titleLength = Math.min(1 + random.nextInt(3), chorus.length - titleStart);
+        String title = capitalize(String.join(" ", Arrays.copyOfRange(chorus, titleStart, titleStart + titleLength)));
+
+        int length = (int) Math.round(210 + 45 * random.nextGaussian());
+        long plays = Math.round(albumPlays * StrictMath.exp(TRACK_PLAYS_SIGMA * random.nextGaussian()));
+
+        return new Song(title, Math.max(60, Math.min(900, length)), albumYear, album, plays, lyrics.toString());
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Generates all remaining songs into a list
+     * @return the songs in the order they were generated
+     */
+    public ArrayList<Song> toList() {
+        ArrayList<Song> songs = new ArrayList<>(numSongs - generated);
+
+        while (hasNext()) {
+            songs.add(next());
+        }
+
+        return songs;
+    }
+
+    /**
+     * Writes a synthetic catalog in the text format of songs.txt
+     * @param args the number of songs, the file to write, and optionally the seed,
+     *             the vocabulary size, and the number of words per song
+     * @throws IOException when the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java CatalogGenerator <numSongs> <file> [seed] [vocabularySize] [wordsPerSong]");
+            return;
+        }
+
+        int numSongs = Integer.parseInt(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        int vocabularySize = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        int wordsPerSong = args.length > 4 ? Integer.parseInt(args[4]) : 200;
+
+        long start = System.nanoTime();
+        CatalogSnapshot.writeText(Paths.get(args[1]), new CatalogGenerator(numSongs, seed, vocabularySize, wordsPerSong));
+        System.out.printf("Wrote %d songs to %s in %.1f s%n", numSongs, args[1], (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Picks the name, year, and popularity of a new album and how many tracks it has
+     */
+    private void startAlbum() {
+        tracksLeft = MIN_ALBUM_SIZE + random.nextInt(MAX_ALBUM_SIZE - MIN_ALBUM_SIZE + 1);
+
+        // Album names draw on the whole vocabulary evenly, so few albums share a name
+        StringBuilder name = new StringBuilder();
+        for (int words = 1 + random.nextInt(3); words > 0; words--) {
+            name.append(capitalize(vocabulary[random.nextInt(vocabulary.length)]));
+
+            if (words > 1) {
+                name.append(' ');
+            }
+        }
+
+        album = name.toString();
+
+        // Most albums are recent, with older ones growing rarer
+        albumYear = LATEST_YEAR - (int) Math.min(LATEST_YEAR - 1950, Math.abs(15 * random.nextGaussian()));
+        albumPlays = MEDIAN_PLAYS * StrictMath.exp(ALBUM_PLAYS_SIGMA * random.nextGaussian());
+    }
+
+    /**
+     * Draws a word from the vocabulary following Zipf's law
+     * @return the word
+     */
+    private String nextWord() {
+        int rank = random.nextInt(vocabulary.length);
+        return vocabulary[random.nextDouble() < keepProbabilities[rank] ? rank : aliases[rank]];
+    }
+
+    /**
+     * Builds the tables of Walker's alias method, which draws from the Zipf distribution
+     * in constant time. Each rank gets an equal slot; a rank more common than average
+     * fills its own slot and donates the rest of its share to the slots of rarer ranks,
+     * which keep their own rank with probability keepProbabilities[rank] and otherwise
+     * stand in for aliases[rank].
+     * @param harmonic the sum of 1/k over the ranks k, which makes the shares add up to 1
+     */
+    private void buildAliasTable(double harmonic) {
+        int size = vocabulary.length;
+        double[] shares = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int numSmall = 0;
+        int numLarge = 0;
+
+        for (int rank = 0; rank < size; rank++) {
+            shares[rank] = size / (harmonic * (rank + 1));
+
+            if (shares[rank] < 1) {
+                small[numSmall++] = rank;
+            } else {
+                large[numLarge++] = rank;
+            }
+        }
+
+        while (numSmall > 0 && numLarge > 0) {
+            int rare = small[--numSmall];
+            int common = large[numLarge - 1];
+
+            keepProbabilities[rare] = shares[rare];
+            aliases[rare] = common;
+            shares[common] -= 1 - shares[rare];
+
+            if (shares[common] < 1) {
+                numLarge--;
+                small[numSmall++] = common;
+            }
+        }
+
+        // Whatever is left has a full slot, up to rounding error
+        while (numLarge > 0) {
+            keepProbabilities[large[--numLarge]] = 1;
+        }
+
+        while (numSmall > 0) {
+            keepProbabilities[small[--numSmall]] = 1;
+        }
+    }
+
+    /**
+     * Builds the word of a vocabulary rank out of consonant-vowel syllables. Ranks are
+     * written as numbers whose digits are syllables, so every rank has its own word and
+     * lower, more common ranks have shorter words.
+     * @param rank the rank, counting from 0
+     * @return the word
+     */
+    private static String wordOfRank(int rank) {
+        int syllables = CONSONANTS.length() * VOWELS.length();
+        StringBuilder word = new StringBuilder();
+
+        // Bijective numbering, so no two ranks share a word even when their digits differ only by leading zeros
+        for (int n = rank + 1; n > 0; n = (n - 1) / syllables) {
+            int syllable = (n - 1) % syllables;
+            word.append(CONSONANTS.charAt(syllable / VOWELS.length())).append(VOWELS.charAt(syllable % VOWELS.length()));
+        }
+
+        return word.toString();
+    }
+
+    /**
+     * Capitalizes the first letter of a string
+     * @param string the string
+     * @return the capitalized string
+     */
+    private static String capitalize(String string) {
+        return Character.toUpperCase(string.charAt(0)) + string.substring(1);
+    }
+}
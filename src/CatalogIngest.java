@@ -0,0 +1,360 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads a text catalog as a pipeline, so songs can be stored and indexed while the rest
+ * of the file is still being read. One thread reads the file and groups its lines into
+ * chunks of records split at blank lines, worker threads parse the chunks, and the
+ * calling thread hands the songs to a sink in file order. Both queues between the stages
+ * are bounded, and so is the number of chunks read but not yet handed over, including
+ * chunks parsed early that wait for a slower one before them. A slow sink or a slow worker
+ * therefore holds back the reader, and memory use does not grow with the size of the file.
+ * A malformed record is reported and skipped rather than ending the load; any other failure
+ * in a reading or parsing thread ends the load and is thrown to the caller.
+ */
+public class CatalogIngest {
+    static final int RECORDS_PER_CHUNK = 256;
+
+    private final int numWorkers;
+    private final int queueCapacity;
+    private final Function<List<String>, Song> parser;
+
+    /**
+     * A record that could not be parsed
+     */
+    public static class RecordError {
+        private final int lineNumber;
+        private final String message;
+
+        /**
+         * Creates a RecordError
+         * @param lineNumber the line the record starts on, counting from 1
+         * @param message what is wrong with the record
+         */
+        public RecordError(int lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+
+        /**
+         * Returns the line the record starts on
+         * @return the line number, counting from 1
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Returns what is wrong with the record
+         * @return the message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + ": " + message;
+        }
+    }
+
+    /**
+     * Consecutive records of the file, numbered so parsed chunks can be put back in order.
+     * A chunk numbered -1 tells a worker to stop, or tells the calling thread that a worker
+     * stopped; if it carries a failure, the worker stopped because of it.
+     */
+    private static class Chunk {
+        private final long sequence;
+        private final ArrayList<ArrayList<String>> records = new ArrayList<>();
+        private final ArrayList<Integer> firstLines = new ArrayList<>();
+        private Song[] songs;
+        private RecordError[] errors;
+        private Throwable failure;
+
+        private Chunk(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates a CatalogIngest with one worker per processor beyond the reading thread
+     */
+    public CatalogIngest() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 8);
+    }
+
+    /**
+     * Creates a CatalogIngest
+     * @param numWorkers the number of threads parsing records
+     * @param queueCapacity the number of chunks each queue holds before the stage feeding it waits
+     * @throws IllegalArgumentException when numWorkers or queueCapacity is not positive
+     */
+    public CatalogIngest(int numWorkers, int queueCapacity) throws IllegalArgumentException {
+        this(numWorkers, queueCapacity, CatalogSnapshot::parseTextRecord);
+    }
+
+    /**
+     * Creates a CatalogIngest that parses records with the given function instead of
+     * CatalogSnapshot.parseTextRecord(), which tests use to slow down or break a worker
+     * @param numWorkers the number of threads parsing records
+     * @param queueCapacity the number of chunks each queue holds before the stage feeding it waits
+     * @param parser parses one record's lines, throwing IllegalArgumentException when the record is malformed
+     * @throws IllegalArgumentException when numWorkers or queueCapacity is not positive
+     */
+    CatalogIngest(int numWorkers, int queueCapacity, Function<List<String>, Song> parser) throws IllegalArgumentException {
+        if (numWorkers <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("CatalogIngest needs at least one worker and room in its queues");
+        }
+
+        this.numWorkers = numWorkers;
+        this.queueCapacity = queueCapacity;
+        this.parser = parser;
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Reads a catalog, handing each song to a sink on the calling thread in file order.
+     * A binary snapshot is read whole and then handed over, since it needs no parsing.
+     * @param file the catalog file, in the text format or a binary snapshot
+     * @param sink receives each song
+     * @param errors receives each malformed record, in file order with the songs
+     * @return the number of songs handed to the sink
+     * @throws IOException when the file cannot be read, or a snapshot is malformed
+     * @throws IllegalStateException when the calling thread is interrupted
+     * @throws RuntimeException when reading or parsing fails for a reason other than a malformed
+     *         record; the exception the reading or parsing thread failed with is rethrown
+     */
+    public int ingest(Path file, Consumer<Song> sink, Consumer<RecordError> errors) throws IOException, IllegalStateException {
+        if (CatalogSnapshot.isSnapshot(file)) {
+            ArrayList<Song> songs = CatalogSnapshot.readSnapshot(file);
+            songs.forEach(sink);
+            return songs.size();
+        }
+
+        BlockingQueue<Chunk> unparsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        // One permit per chunk between being read and being handed to the sink: enough to fill
+        // both queues and keep every worker busy, so the bound only bites when chunks wait to be reordered
+        Semaphore inFlight = new Semaphore(2 * queueCapacity + numWorkers);
+        Throwable[] readError = new Throwable[1];
+
+        Thread reader = new Thread(() -> {
+            try {
+                readChunks(file, unparsed, inFlight);
+            } catch (IOException | RuntimeException | Error e) {
+                readError[0] = e;
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                for (int i = 0; i < numWorkers; i++) {
+                    unparsed.put(new Chunk(-1));
+                }
+            } catch (InterruptedException e) {
+                // The ingest was abandoned
+            }
+        }, "catalog-reader");
+
+        Thread[] workers = new Thread[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            workers[i] = new Thread(() -> parseChunks(unparsed, parsed), "catalog-parser-" + i);
+        }
+
+        reader.setDaemon(true);
+        reader.start();
+        for (Thread worker : workers) {
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        boolean finished = false;
+
+        try {
+            // Chunks finish out of order, so early ones wait here until the chunks before them arrive
+            HashMap<Long, Chunk> waiting = new HashMap<>();
+            long nextSequence = 0;
+            int stoppedWorkers = 0;
+            int numSongs = 0;
+
+            while (stoppedWorkers < numWorkers) {
+                Chunk chunk = parsed.take();
+
+                if (chunk.failure != null) {
+                    throw rethrow(chunk.failure);
+                }
+
+                if (chunk.sequence < 0) {
+                    stoppedWorkers++;
+                    continue;
+                }
+
+                waiting.put(chunk.sequence, chunk);
+
+                for (chunk = waiting.remove(nextSequence); chunk != null; chunk = waiting.remove(++nextSequence)) {
+                    for (int i = 0; i < chunk.songs.length; i++) {
+                        if (chunk.songs[i] != null) {
+                            sink.accept(chunk.songs[i]);
+                            numSongs++;
+                        } else {
+                            errors.accept(chunk.errors[i]);
+                        }
+                    }
+
+                    inFlight.release();
+                }
+            }
+
+            reader.join();
+
+            if (readError[0] instanceof IOException) {
+                throw (IOException) readError[0];
+            } else if (readError[0] != null) {
+                throw rethrow(readError[0]);
+            }
+
+            finished = true;
+            return numSongs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ingest(): interrupted while reading " + file);
+        } finally {
+            if (!finished) {
+                reader.interrupt();
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Rethrows a failure of a reading or parsing thread on the calling thread
+     * @param failure a RuntimeException or Error
+     * @return nothing; declared so callers can write "throw rethrow(failure)"
+     */
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+
+        throw (RuntimeException) failure;
+    }
+
+    /**
+     * Reads a text catalog and queues its records in chunks
+     * @param file the text file
+     * @param unparsed the queue to put the chunks on
+     * @param inFlight holds a permit for each chunk not yet handed to the sink; one is taken per chunk queued
+     * @throws IOException when the file cannot be read
+     * @throws InterruptedException when the thread is interrupted while the queue is full or no permit is free
+     */
+    private void readChunks(Path file, BlockingQueue<Chunk> unparsed, Semaphore inFlight) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long sequence = 0;
+            Chunk chunk = new Chunk(sequence++);
+            ArrayList<String> record = new ArrayList<>();
+            int lineNumber = 0;
+
+            for (String line = reader.readLine(); ; line = reader.readLine()) {
+                lineNumber++;
+
+                if (line != null && !line.trim().isEmpty()) {
+                    if (record.isEmpty()) {
+                        chunk.firstLines.add(lineNumber);
+                    }
+
+                    record.add(line);
+                    continue;
+                }
+
+                if (!record.isEmpty()) {
+                    chunk.records.add(record);
+                    record = new ArrayList<>(6);
+                }
+
+                if (chunk.records.size() == RECORDS_PER_CHUNK || (line == null && !chunk.records.isEmpty())) {
+                    inFlight.acquire();
+                    unparsed.put(chunk);
+                    chunk = new Chunk(sequence++);
+                }
+
+                if (line == null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses chunks until told to stop, then passes the stop on. If parsing fails for
+     * any reason other than a malformed record, a stop carrying the failure is passed on
+     * instead, so the calling thread does not wait for this worker forever.
+     * @param unparsed the queue of chunks to parse
+     * @param parsed the queue to put parsed chunks on
+     */
+    private void parseChunks(BlockingQueue<Chunk> unparsed, BlockingQueue<Chunk> parsed) {
+        try {
+            parseUntilStopped(unparsed, parsed);
+        } catch (RuntimeException | Error e) {
+            Chunk stop = new Chunk(-1);
+            stop.failure = e;
+
+            try {
+                parsed.put(stop);
+            } catch (InterruptedException interrupted) {
+                // The ingest was abandoned
+            }
+        }
+    }
+
+    /**
+     * Parses chunks until told to stop, then passes the stop on
+     * @param unparsed the queue of chunks to parse
+     * @param parsed the queue to put parsed chunks on
+     */
+    private void parseUntilStopped(BlockingQueue<Chunk> unparsed, BlockingQueue<Chunk> parsed) {
+        try {
+            while (true) {
+                Chunk chunk = unparsed.take();
+
+                if (chunk.sequence < 0) {
+                    parsed.put(chunk);
+                    return;
+                }
+
+                int numRecords = chunk.records.size();
+                chunk.songs = new Song[numRecords];
+                chunk.errors = new RecordError[numRecords];
+
+                for (int i = 0; i < numRecords; i++) {
+                    try {
+                        chunk.songs[i] = parser.apply(chunk.records.get(i));
+                    } catch (IllegalArgumentException e) {
+                        chunk.errors[i] = new RecordError(chunk.firstLines.get(i), e.getMessage());
+                    }
+                }
+
+                // The lines are no longer needed, so only the songs stay in memory until they are consumed
+                chunk.records.clear();
+                chunk.records.trimToSize();
+                chunk.firstLines.clear();
+                parsed.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            // The ingest was abandoned
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Reads and writes the song catalog, either as a binary snapshot or in the text format
+ * of songs.txt. A snapshot starts with a magic number, a version, and the number of songs,
+ * followed by one record per song: the name, the album, and the lyrics as a 4-byte length
+ * and that many bytes of UTF-8, then the length in seconds and the release year as 4-byte
+ * ints and the plays as an 8-byte long, all big-endian. Loading a snapshot needs no
+ * tokenizing or number parsing, so it is several times faster than parsing the text.
+ * Both formats are written to a temporary file that replaces the target only once it is
+ * complete, so a crash while writing leaves the old catalog intact.
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x53434154;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes the contents of a file to an open channel
+     */
+    interface ChannelWriter {
+        /**
+         * Writes to the channel, flushing any buffers but leaving the channel open
+         * @param channel the channel of the temporary file
+         * @throws IOException when writing fails
+         */
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * Reads a catalog in either format, telling them apart by the snapshot's magic number
+     * @param file the catalog file
+     * @return the songs in file order
+     * @throws IOException when the file cannot be read or is malformed
+     */
+    public static ArrayList<Song> read(Path file) throws IOException {
+        return isSnapshot(file) ? readSnapshot(file) : readText(file);
+    }
+
+    /**
+     * Determines whether a file is a binary snapshot
+     * @param file the file to check
+     * @return whether the file starts with the snapshot magic number
+     * @throws IOException when the file cannot be read
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        byte[] start = new byte[4];
+
+        try (InputStream in = Files.newInputStream(file)) {
+            if (in.readNBytes(start, 0, 4) < 4) {
+                return false;
+            }
+        }
+
+        return ByteBuffer.wrap(start).getInt() == MAGIC;
+    }
+
+    /**
+     * Reads a binary snapshot
+     * @param file the snapshot file
+     * @return the songs in the order they were written
+     * @throws IOException when the file cannot be read, is not a snapshot, or is truncated
+     */
+    public static ArrayList<Song> readSnapshot(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a catalog snapshot: " + file);
+            }
+
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported catalog snapshot version " + version + ": " + file);
+            }
+
+            int numSongs = buffer.getInt();
+            if (numSongs < 0) {
+                throw new IOException("Catalog snapshot is corrupt: " + file);
+            }
+
+            ArrayList<Song> songs = new ArrayList<>(numSongs);
+            for (int i = 0; i < numSongs; i++) {
+                String name = readString(buffer);
+                String album = readString(buffer);
+                String lyrics = readString(buffer);
+                int length = buffer.getInt();
+                int releaseYear = buffer.getInt();
+                long plays = buffer.getLong();
+
+                songs.add(new Song(name, length, releaseYear, album, plays, lyrics));
+            }
+
+            return songs;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Catalog snapshot is truncated or corrupt: " + file);
+        }
+    }
+
+    /**
+     * Writes a binary snapshot
+     * @param file the file to write, replacing any existing file
+     * @param songs the songs to write
+     * @throws IOException when writing fails
+     */
+    public static void writeSnapshot(Path file, List<Song> songs) throws IOException {
+        writeAtomically(file, channel -> {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(songs.size());
+
+            for (Song song : songs) {
+                writeString(out, song.getName());
+                writeString(out, song.getAlbum());
+                writeString(out, song.getLyrics());
+                out.writeInt(song.getLength());
+                out.writeInt(song.getReleaseYear());
+                out.writeLong(song.getPlays());
+            }
+
+            out.flush();
+        });
+    }
+
+    /**
+     * Reads a catalog in the text format: a name line followed by Album, Length, Release Date,
+     * Plays, and Lyrics lines, with blank lines between songs. Each value is everything after
+     * the first ": " of its line, so values may contain ": " themselves. See CatalogIngest
+     * for a parallel reader that skips malformed songs instead of failing.
+     * @param file the text file
+     * @return the songs in file order
+     * @throws IOException when the file cannot be read or a song is malformed
+     */
+    public static ArrayList<Song> readText(Path file) throws IOException {
+        ArrayList<Song> songs = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            ArrayList<String> record = new ArrayList<>();
+            int lineNumber = 0;
+            int firstLine = 0;
+
+            for (String line = reader.readLine(); ; line = reader.readLine()) {
+                lineNumber++;
+
+                if (line != null && !line.trim().isEmpty()) {
+                    if (record.isEmpty()) {
+                        firstLine = lineNumber;
+                    }
+
+                    record.add(line);
+                    continue;
+                }
+
+                if (!record.isEmpty()) {
+                    try {
+                        songs.add(parseTextRecord(record));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Malformed song at line " + firstLine + " of " + file + ": " + e.getMessage());
+                    }
+
+                    record.clear();
+                }
+
+                if (line == null) {
+                    return songs;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses one song in the text format
+     * @param lines the song's non-blank lines: the name, then the Album, Length, Release Date, Plays, and Lyrics lines
+     * @return the song
+     * @throws IllegalArgumentException when the song is malformed
+     */
+    public static Song parseTextRecord(List<String> lines) throws IllegalArgumentException {
+        if (lines.size() != 6) {
+            throw new IllegalArgumentException("expected 6 lines but found " + lines.size());
+        }
+
+        String[] values = new String[5];
+        for (int i = 0; i < values.length; i++) {
+            String line = lines.get(i + 1);
+            int separator = line.indexOf(": ");
+
+            if (separator == -1) {
+                throw new IllegalArgumentException("line " + (i + 2) + " has no ': '");
+            }
+
+            values[i] = line.substring(separator + 2).trim();
+        }
+
+        return new Song(lines.get(0).trim(), parseLength(values[1]), Integer.parseInt(values[2]), values[0],
+                parsePlays(values[3]), values[4]);
+    }
+
+    /**
+     * Writes a catalog in the text format that readText() reads
+     * @param file the file to write, replacing any existing file
+     * @param songs the songs to write
+     * @throws IOException when writing fails
+     */
+    public static void writeText(Path file, List<Song> songs) throws IOException {
+        writeText(file, songs.iterator());
+    }
+
+    /**
+     * Writes songs in the text format that readText() reads as an iterator produces them,
+     * so a catalog generated on the fly never has to fit in memory
+     * @param file the file to write, replacing any existing file
+     * @param songs the songs to write
+     * @throws IOException when writing fails
+     */
+    public static void writeText(Path file, Iterator<? extends Song> songs) throws IOException {
+        writeAtomically(file, channel -> {
+            BufferedWriter writer = newWriter(channel);
+
+            while (songs.hasNext()) {
+                writer.write(songs.next().toString());
+                writer.write("\n");
+            }
+
+            writer.flush();
+        });
+    }
+
+    /**
+     * Writes the songs of a BST in order in the text format that readText() reads. Each song
+     * is written as the tree is walked, so the catalog is never held in memory as one String.
+     * @param file the file to write, replacing any existing file
+     * @param songs the tree of songs to write
+     * @throws IOException when writing fails
+     */
+    public static void writeText(Path file, BST<Song> songs) throws IOException {
+        writeAtomically(file, channel -> {
+            BufferedWriter writer = newWriter(channel);
+
+            try {
+                songs.forEachInOrder(song -> {
+                    try {
+                        writer.write(song.toString());
+                        writer.write("\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            writer.flush();
+        });
+    }
+
+    /**
+     * Converts a catalog between formats.
+     * Usage: java CatalogSnapshot to-binary songs.txt songs.bin
+     *    or: java CatalogSnapshot to-text songs.bin songs.txt
+     * @param args the direction, the input file, and the output file
+     * @throws IOException when a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("to-binary") || args[0].equals("to-text"))) {
+            System.out.println("Usage: java CatalogSnapshot (to-binary | to-text) <input> <output>");
+            return;
+        }
+
+        ArrayList<Song> songs = read(Paths.get(args[1]));
+
+        if (args[0].equals("to-binary")) {
+            writeSnapshot(Paths.get(args[2]), songs);
+        } else {
+            writeText(Paths.get(args[2]), songs);
+        }
+
+        System.out.println("Converted " + songs.size() + " songs to " + args[2]);
+    }
+
+    /**
+     * Writes a file by writing a temporary file next to it, forcing it to disk, and then
+     * renaming it over the file. The temporary file is deleted if anything fails.
+     * IndexSegment writes its segments through this too.
+     * @param file the file to write, replacing any existing file
+     * @param contents writes the file's contents
+     * @throws IOException when writing or renaming fails
+     */
+    static void writeAtomically(Path file, ChannelWriter contents) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                contents.writeTo(channel);
+                channel.force(false);
+            }
+
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Creates a buffered UTF-8 writer on a channel
+     * @param channel the channel to write to
+     * @return the writer, which must be flushed but not closed
+     */
+    private static BufferedWriter newWriter(FileChannel channel) {
+        return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string
+     * @param buffer the buffer positioned at the length
+     * @return the string
+     * @throws IllegalArgumentException when the length is negative
+     */
+    private static String readString(ByteBuffer buffer) throws IllegalArgumentException {
+        int length = buffer.getInt();
+
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+
+        String string = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes
+     * @param out the output to write to
+     * @param string the string
+     * @throws IOException when writing fails
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Parses a length written as minutes and seconds
+     * @param length the length, such as "03:16"
+     * @return the length in seconds
+     * @throws NumberFormatException when the length is malformed
+     */
+    private static int parseLength(String length) throws NumberFormatException {
+        int colon = length.indexOf(':');
+
+        if (colon == -1) {
+            throw new NumberFormatException("Length has no ':': " + length);
+        }
+
+        return Integer.parseInt(length.substring(0, colon).trim()) * 60 + Integer.parseInt(length.substring(colon + 1).trim());
+    }
+
+    /**
+     * Parses a play count that may have thousands separators
+     * @param plays the play count, such as "399,466,733"
+     * @return the play count
+     * @throws NumberFormatException when the play count is malformed or does not fit in a long
+     */
+    private static long parsePlays(String plays) throws NumberFormatException {
+        long value = 0;
+        boolean hasDigits = false;
+
+        for (int i = 0; i < plays.length(); i++) {
+            char c = plays.charAt(i);
+
+            if (c >= '0' && c <= '9') {
+                if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+                    throw new NumberFormatException("Plays is too large: " + plays);
+                }
+
+                value = value * 10 + (c - '0');
+                hasDigits = true;
+            } else if (c != ',') {
+                throw new NumberFormatException("Plays is not a number: " + plays);
+            }
+        }
+
+        if (!hasDigits) {
+            throw new NumberFormatException("Plays has no digits: " + plays);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Running statistics about the songs in a Catalog. The Catalog reports every song it
+ * adds or removes, and a change to a song as a removal followed by an addition, so the
+ * totals are always current and no query has to look at every song. Counts and totals
+ * cost O(1), per-album and per-year counts O(log n), and the most- and least-played
+ * songs are the ends of the Catalog's play count index.
+ */
+public class CatalogStatistics {
+    private final BST<Song> byPlays;
+    private final TreeMap<String, Integer> albumCounts;
+    private final TreeMap<Integer, Integer> yearCounts;
+    private int count;
+    private long totalPlays;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates the statistics of an empty Catalog
+     * @param byPlays the Catalog's songs ordered by play count
+     */
+    CatalogStatistics(BST<Song> byPlays) {
+        this.byPlays = byPlays;
+        this.albumCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.yearCounts = new TreeMap<>();
+        this.count = 0;
+        this.totalPlays = 0;
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the number of songs
+     * @return the number of songs
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the total number of plays of all songs
+     * @return the total plays
+     */
+    public long getTotalPlays() {
+        return totalPlays;
+    }
+
+    /**
+     * Returns the average number of plays per song
+     * @return the mean plays, or 0 if there are no songs
+     */
+    public double getMeanPlays() {
+        return count == 0 ? 0 : (double) totalPlays / count;
+    }
+
+    /**
+     * Returns the song with the most plays
+     * @precondition getCount() > 0
+     * @return the most-played song
+     * @throws NoSuchElementException when the precondition is violated
+     */
+    public Song getMostPlayed() throws NoSuchElementException {
+        if (count == 0) {
+            throw new NoSuchElementException("getMostPlayed(): there are no songs");
+        }
+
+        return byPlays.findMax();
+    }
+
+    /**
+     * Returns the song with the fewest plays
+     * @precondition getCount() > 0
+     * @return the least-played song
+     * @throws NoSuchElementException when the precondition is violated
+     */
+    public Song getLeastPlayed() throws NoSuchElementException {
+        if (count == 0) {
+            throw new NoSuchElementException("getLeastPlayed(): there are no songs");
+        }
+
+        return byPlays.findMin();
+    }
+
+    /**
+     * Returns the number of songs on an album, ignoring case
+     * @param album the album name
+     * @return the number of songs
+     */
+    public int getAlbumCount(String album) {
+        return albumCounts.getOrDefault(album, 0);
+    }
+
+    /**
+     * Returns the number of songs released in a year
+     * @param year the release year
+     * @return the number of songs
+     */
+    public int getYearCount(int year) {
+        return yearCounts.getOrDefault(year, 0);
+    }
+
+    /**
+     * Returns the number of songs on each album that has any
+     * @return a read-only view of the counts, ordered by album name ignoring case
+     */
+    public SortedMap<String, Integer> getAlbumCounts() {
+        return Collections.unmodifiableSortedMap(albumCounts);
+    }
+
+    /**
+     * Returns the number of songs released in each year that has any
+     * @return a read-only view of the counts, ordered by year
+     */
+    public SortedMap<Integer, Integer> getYearCounts() {
+        return Collections.unmodifiableSortedMap(yearCounts);
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Counts a song the Catalog has added
+     * @param song the song
+     */
+    void add(Song song) {
+        count++;
+        totalPlays += song.getPlays();
+        albumCounts.merge(song.getAlbum(), 1, Integer::sum);
+        yearCounts.merge(song.getReleaseYear(), 1, Integer::sum);
+    }
+
+    /**
+     * Stops counting a song the Catalog has removed. The song's fields must not have
+     * changed since it was added.
+     * @param song the song
+     */
+    void remove(Song song) {
+        count--;
+        totalPlays -= song.getPlays();
+        albumCounts.computeIfPresent(song.getAlbum(), (album, n) -> n == 1 ? null : n - 1);
+        yearCounts.computeIfPresent(song.getReleaseYear(), (year, n) -> n == 1 ? null : n - 1);
+    }
+}
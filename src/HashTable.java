@@ -1,8 +1,21 @@
-import java.util.ArrayList;
-
+/**
+ * A separately chained hash table that grows and shrinks with its contents.
+ * When the load factor leaves its bounds, a table of the new size is allocated
+ * and the old buckets are moved over a few at a time by later operations, so no
+ * single call pays for rehashing the whole table. A bucket that is looked up before
+ * its turn is moved right away, and a new resize waits until the last one is done.
+ */
 public class HashTable<T> {
+    private static final double DEFAULT_LOAD_FACTOR = 0.75;
+    private static final int MIN_BUCKETS = 4;
+
     private int numElements;
-    private ArrayList<LinkedList<T>> table;
+    private LinkedList<T>[] table;
+    private LinkedList<T>[] oldTable;
+    private int rehashIndex;
+    private final int initialSize;
+    private final double loadFactor;
+    private final int rehashStep;
 
     // **** CONSTRUCTORS **** //
     /**
@@ -11,16 +24,32 @@ public class HashTable<T> {
      * @throws IllegalArgumentException when size is negative
      */
     public HashTable(int size) throws IllegalArgumentException {
+        this(size, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an empty HashTable that resizes around the given load factor
+     * @param size the initial size of the HashTable
+     * @param loadFactor the number of elements per bucket at which the table grows
+     * @throws IllegalArgumentException when size is negative or loadFactor is not positive
+     */
+    public HashTable(int size, double loadFactor) throws IllegalArgumentException {
         if (size < 0) {
             throw new IllegalArgumentException("Hashtable cannot have a negative size");
         }
 
-        table = new ArrayList<>();
-
-        for (int i = 0; i < size; i++) {
-            table.add(new LinkedList<>());
+        if (!(loadFactor > 0)) {
+            throw new IllegalArgumentException("Hashtable load factor must be positive");
         }
 
+        this.initialSize = Math.max(size, MIN_BUCKETS);
+        this.loadFactor = loadFactor;
+        // Enough buckets per operation to finish one resize before the load factor is out of bounds again
+        this.rehashStep = (int) Math.ceil(8 / loadFactor);
+
+        table = newTable(initialSize);
+        oldTable = null;
+        rehashIndex = 0;
         numElements = 0;
     }
 
@@ -60,7 +89,9 @@ public class HashTable<T> {
      * Accesses a specified element in the table
      * @param element the element to locate
      * @precondition element != null
-     * @return the bucket number where the element is located or -1 if it is not found
+     * @return the bucket number where the element is located or -1 if it is not found.
+     * The bucket number always refers to the current table; if a resize is in progress,
+     * the element's bucket is moved into it first.
      * @throws NullPointerException when the precondition is violated
      */
     public int find(T element) throws NullPointerException {
@@ -68,10 +99,10 @@ public class HashTable<T> {
             throw new NullPointerException("find(...): element cannot be null");
         }
 
-        int index = hash(element);
-        LinkedList<T> list = table.get(index);
+        int index = bucketIndexFor(element);
+        LinkedList<T> list = table[index];
 
-        if (list.find(element) != -1) {
+        if (list != null && list.find(element) != -1) {
             return index;
         }
 
@@ -94,7 +125,11 @@ public class HashTable<T> {
             return null;
         }
 
-        LinkedList<T> list = table.get(hash(element));
+        LinkedList<T> list = table[bucketIndexFor(element)];
+
+        if (list == null) {
+            return null;
+        }
 
         int index = list.find(element);
         if (index == -1) {
@@ -121,12 +156,41 @@ public class HashTable<T> {
     }
 
     /**
-     * Returns the hash of a given object
-     * @param obj the object to get the hash of
-     * @return the object's hash
+     * Mixes the high bits of a hash code into the low bits, so that hash codes
+     * differing only in their upper bits still land in different buckets
+     * @param hashCode the object's hash code
+     * @return the spread hash
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the bucket index of a spread hash
+     * @param hash the spread hash
+     * @param numBuckets the number of buckets in the table
+     * @return an index from 0 to numBuckets - 1, even for negative hashes
      */
-    private int hash(T obj) {
-        return Math.abs(obj.hashCode()) % table.size();
+    private static int indexFor(int hash, int numBuckets) {
+        return Math.floorMod(hash, numBuckets);
+    }
+
+    /**
+     * Returns the index of the bucket an element belongs in within the current table.
+     * If a resize is in progress and the element's bucket is still in the old table,
+     * that bucket is moved first.
+     * @param element the element
+     * @return the bucket index in the current table
+     */
+    private int bucketIndexFor(T element) {
+        int hash = spread(element.hashCode());
+
+        if (oldTable != null) {
+            moveBucket(indexFor(hash, oldTable.length));
+        }
+
+        return indexFor(hash, table.length);
     }
 
     // **** MUTATORS **** //
@@ -141,9 +205,17 @@ public class HashTable<T> {
             throw new NullPointerException("add(): element is null");
         }
 
+        rehashStep();
+
         numElements++;
-        LinkedList<T> bucket = table.get(hash(element));
-        bucket.addLast(element);
+        int index = bucketIndexFor(element);
+
+        if (table[index] == null) {
+            table[index] = new LinkedList<>();
+        }
+
+        table[index].addLast(element);
+        checkLoad();
     }
 
     /**
@@ -158,16 +230,24 @@ public class HashTable<T> {
             throw new NullPointerException("delete(): element cannot be null");
         }
 
-        int index = find(element);
+        rehashStep();
 
-        if (index == -1) {
+        LinkedList<T> list = table[bucketIndexFor(element)];
+
+        if (list == null) {
             return false;
         }
 
-        LinkedList<T> list = table.get(index);
         int listIndex = list.find(element);
+
+        if (listIndex == -1) {
+            return false;
+        }
+
         list.advanceIteratorToIndex(listIndex);
         list.removeIterator();
+        numElements--;
+        checkLoad();
 
         return true;
     }
@@ -177,12 +257,95 @@ public class HashTable<T> {
      */
     public void clear() {
         numElements = 0;
-        int oldSize = table.size();
-        table = new ArrayList<>();
+        table = newTable(initialSize);
+        oldTable = null;
+        rehashIndex = 0;
+    }
 
-        for (int i = 0; i < oldSize; i++) {
-            table.add(new LinkedList<>());
+    /**
+     * Starts a resize if the load factor has left its bounds. While a resize is still
+     * in progress nothing happens; the load is checked again by later operations once
+     * it is done, so no operation has to finish moving the old table.
+     */
+    private void checkLoad() {
+        if (oldTable != null) {
+            return;
         }
+
+        if (numElements > loadFactor * table.length) {
+            resize(table.length * 2);
+        } else if (table.length > initialSize && numElements < loadFactor / 4 * table.length) {
+            resize(Math.max(table.length / 2, initialSize));
+        }
+    }
+
+    /**
+     * Starts moving the elements into a table with a new number of buckets
+     * @precondition no resize is in progress
+     * @param numBuckets the new number of buckets
+     */
+    private void resize(int numBuckets) {
+        oldTable = table;
+        table = newTable(numBuckets);
+        rehashIndex = 0;
+    }
+
+    /**
+     * Moves the next few buckets of the old table into the current table,
+     * if a resize is in progress
+     */
+    private void rehashStep() {
+        if (oldTable == null) {
+            return;
+        }
+
+        int end = Math.min(rehashIndex + rehashStep, oldTable.length);
+
+        for (; rehashIndex < end; rehashIndex++) {
+            moveBucket(rehashIndex);
+        }
+
+        if (rehashIndex == oldTable.length) {
+            oldTable = null;
+            rehashIndex = 0;
+        }
+    }
+
+    /**
+     * Moves the elements of one bucket of the old table into the current table.
+     * Buckets that were already moved, or never created, are left alone.
+     * @precondition a resize is in progress
+     * @param oldIndex the bucket's index in the old table
+     */
+    private void moveBucket(int oldIndex) {
+        LinkedList<T> list = oldTable[oldIndex];
+
+        if (list == null) {
+            return;
+        }
+
+        for (list.positionIterator(); !list.offEnd(); list.advanceIterator()) {
+            T element = list.getIterator();
+            int index = indexFor(spread(element.hashCode()), table.length);
+
+            if (table[index] == null) {
+                table[index] = new LinkedList<>();
+            }
+
+            table[index].addLast(element);
+        }
+
+        oldTable[oldIndex] = null;
+    }
+
+    /**
+     * Allocates an array of empty buckets. Buckets are created on first use.
+     * @param numBuckets the number of buckets
+     * @return the new bucket array
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private LinkedList<T>[] newTable(int numBuckets) {
+        return (LinkedList<T>[]) new LinkedList[numBuckets];
     }
 
     // **** ADDITIONAL METHODS **** //
@@ -194,8 +357,16 @@ public class HashTable<T> {
     public String toString() {
         StringBuilder str = new StringBuilder();
 
+        if (oldTable != null) {
+            for (int i = rehashIndex; i < oldTable.length; i++) {
+                if (oldTable[i] != null && oldTable[i].getLength() != 0) {
+                    str.append(oldTable[i]);
+                }
+            }
+        }
+
         for (LinkedList<T> list : table) {
-            if (list.getLength() != 0) {
+            if (list != null && list.getLength() != 0) {
                 str.append(list);
             }
         }
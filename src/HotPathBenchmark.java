@@ -0,0 +1,324 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Measures the hot paths of the index and the data structures under it: indexing,
+ * tokenizing, and searching songs, HashTable and OpenHashTable adds and lookups,
+ * LinkedList.find, and BST inserts, searches, and removes. Each benchmark runs for every
+ * catalog size, and where it matters for sorted and random insertion orders and for
+ * small and large vocabularies. Every benchmark runs a few untimed warm-up iterations and
+ * then several timed ones, each doing a fixed batch of operations after an untimed setup,
+ * and reports throughput, the mean and best time per operation, and the bytes allocated
+ * per operation.
+ * Results are folded into a field that is printed at the end, so the JIT cannot drop
+ * the work being measured. Needs nothing but the JDK, so it runs offline.
+ * Usage: java HotPathBenchmark [catalogSizes] [nameFilter]
+ *   e.g. java HotPathBenchmark 1000,10000,100000 BST
+ *   or: mvn -Pbenchmark verify -Dbenchmark.sizes=1000,10000 -Dbenchmark.filter=BST
+ */
+public class HotPathBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final int WORDS_PER_SONG = 100;
+    private static final int[] VOCABULARY_SIZES = {1000, 20000};
+    private static final int MAX_LIST_SIZE = 10000;
+
+    private static long sink;
+
+    /**
+     * Holds the structure an iteration's setup creates for its operations to use
+     * @param <T> the type of the structure
+     */
+    private static class Fixture<T> {
+        private T value;
+    }
+
+    /**
+     * One timed operation; its result is kept so the work cannot be optimized away
+     */
+    private interface Operation {
+        /**
+         * Runs the operation once
+         * @param i the number of the operation within its iteration
+         * @return a value derived from the result
+         */
+        long run(int i);
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = args.length > 0 ? Arrays.stream(args[0].split(",")).mapToInt(Integer::parseInt).toArray() : new int[] {1000, 10000, 100000};
+        String filter = args.length > 1 ? args[1] : "";
+
+        System.out.printf("%-28s %-32s %14s %12s %12s %12s%n", "benchmark", "params", "ops/s", "mean ns/op", "best ns/op", "B/op");
+
+        for (int size : sizes) {
+            for (int vocabularySize : VOCABULARY_SIZES) {
+                benchmarkIndex(size, vocabularySize, filter);
+            }
+
+            benchmarkHashTable(size, filter);
+            benchmarkLinkedList(Math.min(size, MAX_LIST_SIZE), filter);
+
+            for (boolean sorted : new boolean[] {true, false}) {
+                benchmarkBST(size, sorted, filter);
+            }
+        }
+
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Benchmarks SearchEngine.indexSong, the Tokenizer, and SearchEngine.search
+     * @param size the number of songs
+     * @param vocabularySize the number of distinct words in the lyrics
+     * @param filter only benchmarks whose names contain this are run
+     */
+    private static void benchmarkIndex(int size, int vocabularySize, String filter) {
+        ArrayList<Song> songs = new CatalogGenerator(size, 42, vocabularySize, WORDS_PER_SONG).toList();
+        String params = "songs=" + size + " vocabulary=" + vocabularySize;
+        Fixture<SearchEngine> engine = new Fixture<>();
+
+        measure("SearchEngine.indexSong", params, size, filter,
+                () -> {
+                    songs.forEach(song -> song.setId(-1));
+                    engine.value = new SearchEngine(new ArrayList<>(), vocabularySize);
+                },
+                i -> {
+                    engine.value.indexSong(songs.get(i));
+                    return songs.get(i).getId();
+                });
+
+        Tokenizer tokenizer = new Tokenizer();
+        measure("Tokenizer.next", params + " per song", size, filter, () -> { },
+                i -> {
+                    long tokens = 0;
+                    tokenizer.reset(songs.get(i).getLyrics());
+
+                    while (tokenizer.next()) {
+                        tokens += tokenizer.getLength();
+                    }
+
+                    return tokens;
+                });
+
+        String[] queries = queryWords(songs, 1000, new Random(7));
+        SearchEngine searchEngine = new SearchEngine(songs, vocabularySize);
+        measure("SearchEngine.search", params, queries.length, filter, () -> { },
+                i -> searchEngine.search(queries[i]).getSize());
+    }
+
+    /**
+     * Benchmarks add, get, and contains of HashTable and OpenHashTable on the same keys
+     * @param size the number of elements
+     * @param filter only benchmarks whose names contain this are run
+     */
+    private static void benchmarkHashTable(int size, String filter) {
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "key" + i;
+        }
+
+        String[] probes = new String[size];
+        Random random = new Random(11);
+        for (int i = 0; i < size; i++) {
+            // Half the probes miss
+            probes[i] = random.nextBoolean() ? keys[random.nextInt(size)] : "missing" + i;
+        }
+
+        String params = "elements=" + size;
+        Fixture<HashTable<String>> table = new Fixture<>();
+
+        measure("HashTable.add", params, size, filter, () -> table.value = new HashTable<>(16),
+                i -> {
+                    table.value.add(keys[i]);
+                    return table.value.getNumElements();
+                });
+
+        HashTable<String> full = new HashTable<>(16);
+        for (String key : keys) {
+            full.add(key);
+        }
+
+        measure("HashTable.get", params, size, filter, () -> { },
+                i -> full.get(probes[i]) == null ? 0 : 1);
+        measure("HashTable.contains", params, size, filter, () -> { },
+                i -> full.contains(probes[i]) ? 1 : 0);
+
+        Fixture<OpenHashTable<String>> openTable = new Fixture<>();
+
+        measure("OpenHashTable.add", params, size, filter, () -> openTable.value = new OpenHashTable<>(16),
+                i -> {
+                    openTable.value.add(keys[i]);
+                    return openTable.value.getNumElements();
+                });
+
+        OpenHashTable<String> openFull = new OpenHashTable<>(16);
+        for (String key : keys) {
+            openFull.add(key);
+        }
+
+        measure("OpenHashTable.get", params, size, filter, () -> { },
+                i -> openFull.get(probes[i]) == null ? 0 : 1);
+        measure("OpenHashTable.contains", params, size, filter, () -> { },
+                i -> openFull.contains(probes[i]) ? 1 : 0);
+    }
+
+    /**
+     * Benchmarks LinkedList.find, which scans the list
+     * @param size the number of elements
+     * @param filter only benchmarks whose names contain this are run
+     */
+    private static void benchmarkLinkedList(int size, String filter) {
+        LinkedList<Integer> list = new LinkedList<>();
+        for (int i = 0; i < size; i++) {
+            list.addLast(i);
+        }
+
+        Integer[] probes = new Integer[1000];
+        Random random = new Random(13);
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextInt(size + size / 4);
+        }
+
+        measure("LinkedList.find", "elements=" + size, probes.length, filter, () -> { },
+                i -> list.find(probes[i]));
+    }
+
+    /**
+     * Benchmarks BST.insert, search, and remove
+     * @param size the number of values
+     * @param sorted whether values are inserted in ascending order rather than shuffled
+     * @param filter only benchmarks whose names contain this are run
+     */
+    private static void benchmarkBST(int size, boolean sorted, String filter) {
+        ArrayList<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+
+        if (!sorted) {
+            Collections.shuffle(values, new Random(17));
+        }
+
+        String params = "values=" + size + (sorted ? " sorted" : " random");
+        Fixture<BST<Integer>> tree = new Fixture<>();
+
+        measure("BST.insert", params, size, filter, () -> tree.value = new BST<>(),
+                i -> {
+                    tree.value.insert(values.get(i), Integer::compare);
+                    return tree.value.getSize();
+                });
+
+        BST<Integer> full = new BST<>();
+        for (Integer value : values) {
+            full.insert(value, Integer::compare);
+        }
+
+        measure("BST.search", params, size, filter, () -> { },
+                i -> full.search(values.get(i), Integer::compare));
+
+        measure("BST.remove", params, size, filter,
+                () -> {
+                    tree.value = new BST<>();
+                    for (Integer value : values) {
+                        tree.value.insert(value, Integer::compare);
+                    }
+                },
+                i -> {
+                    tree.value.remove(values.get(i), Integer::compare);
+                    return tree.value.getSize();
+                });
+    }
+
+    /**
+     * Runs one benchmark and prints a line of results
+     * @param name the benchmark's name
+     * @param params the parameters it ran with
+     * @param operations the number of operations in each iteration
+     * @param filter the benchmark is skipped unless its name contains this
+     * @param setup run untimed before each iteration
+     * @param operation the operation to time
+     */
+    private static void measure(String name, String params, int operations, String filter, Runnable setup, Operation operation) {
+        if (!name.contains(filter)) {
+            return;
+        }
+
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++) {
+            setup.run();
+            runBatch(operations, operation);
+        }
+
+        long totalNanos = 0;
+        long bestNanos = Long.MAX_VALUE;
+        long totalBytes = 0;
+
+        for (int iteration = 0; iteration < MEASURED_ITERATIONS; iteration++) {
+            setup.run();
+
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            runBatch(operations, operation);
+            long nanos = System.nanoTime() - start;
+            totalBytes += allocatedBytes() - bytesBefore;
+
+            totalNanos += nanos;
+            bestNanos = Math.min(bestNanos, nanos);
+        }
+
+        double meanNanosPerOp = (double) totalNanos / MEASURED_ITERATIONS / operations;
+        double bytesPerOp = allocatedBytes() < 0 ? Double.NaN : (double) totalBytes / MEASURED_ITERATIONS / operations;
+
+        System.out.printf("%-28s %-32s %14.0f %12.1f %12.1f %12.1f%n", name, params, 1e9 / meanNanosPerOp, meanNanosPerOp,
+                (double) bestNanos / operations, bytesPerOp);
+    }
+
+    /**
+     * Runs an operation a number of times, folding its results into the sink
+     * @param operations the number of times to run it
+     * @param operation the operation
+     */
+    private static void runBatch(int operations, Operation operation) {
+        long result = 0;
+
+        for (int i = 0; i < operations; i++) {
+            result += operation.run(i);
+        }
+
+        sink += result;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated so far
+     * @return the allocated bytes, or -1 if the JVM does not track them
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    /**
+     * Picks words from the songs' lyrics to search for, so common words come up more often
+     * @param songs the songs
+     * @param count the number of words
+     * @param random the source of randomness
+     * @return the words
+     */
+    private static String[] queryWords(ArrayList<Song> songs, int count, Random random) {
+        String[] words = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            String[] lyrics = songs.get(random.nextInt(songs.size())).getLyrics().split(" ");
+            words[i] = lyrics[random.nextInt(lyrics.length)];
+        }
+
+        return words;
+    }
+}
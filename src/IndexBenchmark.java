@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how building the search index scales with the number of threads.
+ * A synthetic catalog is generated from a fixed seed, indexed once sequentially and
+ * then in parallel on pools of 1, 2, 4, ... threads up to the number of processors.
+ * Every parallel index is checked against the sequential one before it is timed.
+ * Usage: java IndexBenchmark [numSongs] [wordsPerSong] [positional]
+ */
+public class IndexBenchmark {
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) {
+        int numSongs = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int wordsPerSong = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        boolean positional = args.length > 2 && Boolean.parseBoolean(args[2]);
+
+        ArrayList<Song> catalog = new CatalogGenerator(numSongs, 42, VOCABULARY_SIZE, wordsPerSong).toList();
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("Indexing " + numSongs + " songs of " + wordsPerSong + " words"
+                + (positional ? " with positions" : "") + " on " + processors + " processors");
+
+        SearchEngine sequential = new SearchEngine(catalog, VOCABULARY_SIZE, positional);
+        double sequentialMillis = time(() -> sequential.rebuild(catalog));
+        System.out.printf("%-12s %10.1f ms%n", "sequential", sequentialMillis);
+
+        for (int threads = 1; threads <= processors; threads = nextThreadCount(threads, processors)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            SearchEngine parallel = new SearchEngine(catalog, VOCABULARY_SIZE, positional, pool);
+
+            if (!parallel.hasSameIndexAs(sequential)) {
+                throw new IllegalStateException("Parallel index on " + threads + " threads differs from the sequential index");
+            }
+
+            double millis = time(() -> parallel.rebuild(catalog, pool));
+            System.out.printf("%-12s %10.1f ms %6.2fx%n", threads + " threads", millis, sequentialMillis / millis);
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Doubles a thread count, stopping at the number of processors
+     * @param threads the current thread count
+     * @param processors the number of processors
+     * @return the next thread count, which is above processors once processors has been used
+     */
+    private static int nextThreadCount(int threads, int processors) {
+        return threads < processors ? Math.min(threads * 2, processors) : threads + 1;
+    }
+
+    /**
+     * Runs a task several times after a warm-up run
+     * @param task the task to time
+     * @return the fastest run in milliseconds
+     */
+    private static double time(Runnable task) {
+        task.run();
+        long best = Long.MAX_VALUE;
+
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best / 1e6;
+    }
+}
@@ -0,0 +1,487 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A search index stored in one binary file and read through a memory mapping, so opening
+ * nothing is parsed up front, and pages are only kept in memory once a query touches them.
+ * The file holds the term dictionary, every posting list's encoded bytes, each song's words
+ * and field lengths, and a checksum of the data the index was built from, so a stale
+ * segment can be detected and rebuilt. Every section carries its own CRC-32, checked the
+ * first time the section is read, so opening costs as much as reading the term dictionary
+ * rather than the whole file: opening checks the file size against the header and the
+ * checksum of the dictionary, each posting list is checked as it is read, and the song
+ * tables are checked on first use. A section that turns out to be damaged after opening
+ * throws UncheckedIOException; verify() checks everything at once. Segments are written to
+ * a temporary file and renamed into place, so a crash while saving leaves the old segment
+ * intact.
+ *
+ * Layout, with every number big-endian:
+ * a header (magic, version, source checksum, flags, counts, the length of the posting
+ * bytes, and field length totals), the free song IDs, the term offsets and term bytes,
+ * a term table of posting offsets, sizes, last IDs, and checksums, a song table of field
+ * lengths and word counts, the songs' word IDs, the posting bytes, and finally a footer
+ * with the CRC-32 of everything up to the song table and the CRC-32 of the song tables.
+ */
+public class IndexSegment {
+    private static final int MAGIC = 0x53474958;
+    // Version 2 numbers songs in catalog file order instead of title order;
+    // version 3 adds the length of the posting bytes and the CRC-32 footer;
+    // version 4 splits the checksum into one per section and one per posting list
+    private static final int VERSION = 4;
+    private static final int HEADER_SIZE = 48 + 8 * SearchEngine.NUM_FIELDS;
+    private static final int FOOTER_SIZE = 16;
+    private static final int TERM_ENTRY_SIZE = 24;
+    private static final int SONG_ENTRY_SIZE = 8 + 4 * SearchEngine.NUM_FIELDS;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long sourceChecksum;
+    private final boolean positional;
+    private final int numTerms;
+    private final int numSongs;
+    private final int numFreeIds;
+    private final long[] totalFieldLengths;
+    private final int termOffsetsStart;
+    private final int poolStart;
+    private final int termTableStart;
+    private final int songTableStart;
+    private final int songTermsStart;
+    private final int postingsStart;
+    private volatile boolean songsVerified;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Opens a segment file by mapping it into memory. Only the header is parsed, and only
+     * the sections up to the term table, which are read when the index is loaded anyway,
+     * are checked against their checksum.
+     * @param file the segment file
+     * @throws IOException when the file cannot be read, is not a valid segment, or is truncated,
+     *         or its header or term dictionary is corrupt
+     */
+    public IndexSegment(Path file) throws IOException {
+        this.file = file;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Index segment is too large to map: " + file);
+            }
+
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not an index segment: " + file);
+            }
+
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an index segment, or written by a different version: " + file);
+        }
+
+        sourceChecksum = buffer.getLong(8);
+        positional = buffer.getInt(16) != 0;
+        numTerms = buffer.getInt(20);
+        numSongs = buffer.getInt(24);
+        numFreeIds = buffer.getInt(28);
+        int poolSize = buffer.getInt(32);
+        int numSongTerms = buffer.getInt(36);
+        long postingsLength = buffer.getLong(40);
+
+        totalFieldLengths = new long[SearchEngine.NUM_FIELDS];
+        for (int field = 0; field < totalFieldLengths.length; field++) {
+            totalFieldLengths[field] = buffer.getLong(48 + 8 * field);
+        }
+
+        if (numTerms < 0 || numSongs < 0 || numFreeIds < 0 || poolSize < 0 || numSongTerms < 0 || postingsLength < 0
+                || HEADER_SIZE + 4L * numFreeIds + 4L * (numTerms + 1) + poolSize + (long) TERM_ENTRY_SIZE * numTerms
+                + (long) SONG_ENTRY_SIZE * numSongs + 4L * numSongTerms + postingsLength + FOOTER_SIZE != buffer.capacity()) {
+            throw new IOException("Index segment is truncated or corrupt: " + file);
+        }
+
+        termOffsetsStart = HEADER_SIZE + 4 * numFreeIds;
+        poolStart = termOffsetsStart + 4 * (numTerms + 1);
+        termTableStart = poolStart + poolSize;
+        songTableStart = termTableStart + TERM_ENTRY_SIZE * numTerms;
+        songTermsStart = songTableStart + SONG_ENTRY_SIZE * numSongs;
+        postingsStart = songTermsStart + 4 * numSongTerms;
+        songsVerified = false;
+
+        // Every offset into the file comes from these sections, so they are checked before anything else is read
+        if (checksum(0, songTableStart) != buffer.getLong(buffer.capacity() - FOOTER_SIZE)) {
+            throw new IOException("Index segment is corrupt, its term dictionary does not match its checksum: " + file);
+        }
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the checksum of the data the index was built from
+     * @return the source checksum
+     */
+    public long getSourceChecksum() {
+        return sourceChecksum;
+    }
+
+    /**
+     * Determines whether the posting lists store word positions
+     * @return whether the index is positional
+     */
+    public boolean isPositional() {
+        return positional;
+    }
+
+    /**
+     * Returns the number of distinct words in the index
+     * @return the number of terms
+     */
+    public int getNumTerms() {
+        return numTerms;
+    }
+
+    /**
+     * Returns the number of song IDs in use or free
+     * @return one more than the largest song ID
+     */
+    public int getNumSongs() {
+        return numSongs;
+    }
+
+    /**
+     * Returns the total number of indexed words in one field across all songs
+     * @param field the field number
+     * @return the total length
+     */
+    public long getTotalFieldLength(int field) {
+        return totalFieldLengths[field];
+    }
+
+    /**
+     * Reads the free song IDs, in the order they will be reused from the end
+     * @return the free IDs
+     */
+    public int[] readFreeIds() {
+        int[] freeIds = new int[numFreeIds];
+
+        for (int i = 0; i < numFreeIds; i++) {
+            freeIds[i] = buffer.getInt(HEADER_SIZE + 4 * i);
+        }
+
+        return freeIds;
+    }
+
+    /**
+     * Reads the term dictionary. Terms get the same IDs they had when the segment was written.
+     * @param expectedTerms the number of terms to make room for
+     * @return the dictionary
+     */
+    public TermDictionary readTerms(int expectedTerms) {
+        TermDictionary terms = new TermDictionary(Math.max(expectedTerms, numTerms));
+        char[] chars = new char[16];
+
+        for (int id = 0; id < numTerms; id++) {
+            int start = buffer.getInt(termOffsetsStart + 4 * id);
+            int length = buffer.getInt(termOffsetsStart + 4 * (id + 1)) - start;
+
+            if (length > chars.length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) buffer.get(poolStart + start + i);
+            }
+
+            terms.add(chars, 0, length);
+        }
+
+        return terms;
+    }
+
+    /**
+     * Returns the file the segment was opened from
+     * @return the segment file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of songs containing a word without reading its posting list
+     * @param slot the word's term ID
+     * @return the number of songs
+     */
+    public int getDocumentFrequency(int slot) {
+        return buffer.getInt(termTableStart + TERM_ENTRY_SIZE * slot + 12);
+    }
+
+    /**
+     * Copies a word's posting list out of the segment and checks it against its checksum
+     * @param slot the word's term ID
+     * @return the posting list
+     * @throws UncheckedIOException when the posting list is corrupt
+     */
+    public PostingList readPostings(int slot) throws UncheckedIOException {
+        int entry = termTableStart + TERM_ENTRY_SIZE * slot;
+        long offset = buffer.getLong(entry);
+        byte[] data = new byte[buffer.getInt(entry + 8)];
+
+        buffer.get((int) (postingsStart + offset), data);
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != buffer.getInt(entry + 20)) {
+            throw new UncheckedIOException(new IOException("Index segment is corrupt, the posting list of term "
+                    + slot + " does not match its checksum: " + file));
+        }
+
+        return new PostingList(positional, data, buffer.getInt(entry + 12), buffer.getInt(entry + 16));
+    }
+
+    /**
+     * Reads the term IDs of the words a song was indexed under
+     * @param id the song ID
+     * @return the term IDs, or null if the ID is free
+     * @throws UncheckedIOException when this is the first read of the song tables and they are corrupt
+     */
+    public int[] readSongTerms(int id) throws UncheckedIOException {
+        verifySongsOnce();
+
+        int entry = songTableStart + SONG_ENTRY_SIZE * id;
+        int start = buffer.getInt(entry);
+        int count = buffer.getInt(entry + 4);
+
+        if (count < 0) {
+            return null;
+        }
+
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = buffer.getInt(songTermsStart + 4 * (start + i));
+        }
+
+        return slots;
+    }
+
+    /**
+     * Returns the number of indexed words in one field of a song
+     * @param field the field number
+     * @param id the song ID
+     * @return the field length
+     * @throws UncheckedIOException when this is the first read of the song tables and they are corrupt
+     */
+    public int getFieldLength(int field, int id) throws UncheckedIOException {
+        verifySongsOnce();
+
+        return buffer.getInt(songTableStart + SONG_ENTRY_SIZE * id + 8 + 4 * field);
+    }
+
+    /**
+     * Checks the song tables against their checksum the first time they are read
+     * @throws UncheckedIOException when the song tables are corrupt
+     */
+    private void verifySongsOnce() throws UncheckedIOException {
+        if (songsVerified) {
+            return;
+        }
+
+        if (checksum(songTableStart, postingsStart) != buffer.getLong(buffer.capacity() - FOOTER_SIZE + 8)) {
+            throw new UncheckedIOException(new IOException("Index segment is corrupt, its song tables do not match their checksum: " + file));
+        }
+
+        songsVerified = true;
+    }
+
+    /**
+     * Computes the CRC-32 of a range of the mapped file
+     * @param start the first byte of the range
+     * @param end the byte after the range
+     * @return the checksum
+     */
+    private long checksum(int start, int end) {
+        CRC32 crc = new CRC32();
+        ByteBuffer range = buffer.duplicate();
+
+        range.limit(end).position(start);
+        crc.update(range);
+
+        return crc.getValue();
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Checks every section of the segment against its checksum, including the song tables
+     * and posting lists that are otherwise only checked when first read. Reads the whole file.
+     * @throws IOException when any part of the segment is corrupt
+     */
+    public void verify() throws IOException {
+        try {
+            verifySongsOnce();
+
+            for (int slot = 0; slot < numTerms; slot++) {
+                readPostings(slot);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes a segment file atomically, so the old file stays intact if writing fails
+     * @param file the file to write, replacing any existing file
+     * @param sourceChecksum the checksum of the data the index was built from
+     * @param positional whether the posting lists store word positions
+     * @param terms the term dictionary
+     * @param postings the posting list of each term
+     * @param freeIds the free song IDs, of which the first numFreeIds are used
+     * @param numFreeIds the number of free song IDs
+     * @param songTerms the term IDs of each song's words, or null for a free ID
+     * @param fieldLengths the length of each field of each song
+     * @param totalFieldLengths the total length of each field
+     * @throws IOException when writing fails
+     */
+    public static void write(Path file, long sourceChecksum, boolean positional, TermDictionary terms,
+            ArrayList<PostingList> postings, int[] freeIds, int numFreeIds, ArrayList<int[]> songTerms,
+            int[][] fieldLengths, long[] totalFieldLengths) throws IOException {
+        CatalogSnapshot.writeAtomically(file, channel -> {
+            int numTerms = terms.size();
+            int poolSize = 0;
+            int numSongTerms = 0;
+            long postingsLength = 0;
+
+            for (int id = 0; id < numTerms; id++) {
+                poolSize += terms.getTermLength(id);
+            }
+
+            for (int[] slots : songTerms) {
+                numSongTerms += slots == null ? 0 : slots.length;
+            }
+
+            long[] postingChecksums = new long[postings.size()];
+            for (int slot = 0; slot < postingChecksums.length; slot++) {
+                PostingList list = postings.get(slot);
+                CRC32 listCrc = new CRC32();
+
+                list.writeTo(new DataOutputStream(new CheckedOutputStream(OutputStream.nullOutputStream(), listCrc)));
+                postingChecksums[slot] = listCrc.getValue();
+                postingsLength += list.getNumBytes();
+            }
+
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceChecksum);
+            out.writeInt(positional ? 1 : 0);
+            out.writeInt(numTerms);
+            out.writeInt(songTerms.size());
+            out.writeInt(numFreeIds);
+            out.writeInt(poolSize);
+            out.writeInt(numSongTerms);
+            out.writeLong(postingsLength);
+
+            for (long total : totalFieldLengths) {
+                out.writeLong(total);
+            }
+
+            for (int i = 0; i < numFreeIds; i++) {
+                out.writeInt(freeIds[i]);
+            }
+
+            int offset = 0;
+            for (int id = 0; id < numTerms; id++) {
+                out.writeInt(offset);
+                offset += terms.getTermLength(id);
+            }
+
+            out.writeInt(offset);
+
+            for (int id = 0; id < numTerms; id++) {
+                for (int i = 0; i < terms.getTermLength(id); i++) {
+                    out.writeByte(terms.charAt(id, i));
+                }
+            }
+
+            long postingOffset = 0;
+            for (int slot = 0; slot < postings.size(); slot++) {
+                PostingList list = postings.get(slot);
+
+                out.writeLong(postingOffset);
+                out.writeInt(list.getNumBytes());
+                out.writeInt(list.size());
+                out.writeInt(list.getLastId());
+                out.writeInt((int) postingChecksums[slot]);
+                postingOffset += list.getNumBytes();
+            }
+
+            // Each checksum covers the bytes flushed since the last one was taken
+            out.flush();
+            long headChecksum = crc.getValue();
+            crc.reset();
+
+            int songTermOffset = 0;
+            for (int id = 0; id < songTerms.size(); id++) {
+                int[] slots = songTerms.get(id);
+
+                out.writeInt(songTermOffset);
+                out.writeInt(slots == null ? -1 : slots.length);
+
+                for (int[] lengths : fieldLengths) {
+                    out.writeInt(slots == null ? 0 : lengths[id]);
+                }
+
+                songTermOffset += slots == null ? 0 : slots.length;
+            }
+
+            for (int[] slots : songTerms) {
+                if (slots != null) {
+                    for (int slot : slots) {
+                        out.writeInt(slot);
+                    }
+                }
+            }
+
+            out.flush();
+            long songsChecksum = crc.getValue();
+
+            for (PostingList list : postings) {
+                list.writeTo(out);
+            }
+
+            out.writeLong(headChecksum);
+            out.writeLong(songsChecksum);
+            out.flush();
+        });
+    }
+
+    /**
+     * Computes the CRC-32 checksum of a file, used to tell whether a segment was built from it
+     * @param file the file
+     * @return the checksum
+     * @throws IOException when the file cannot be read
+     */
+    public static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[1 << 16];
+
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read = in.read(chunk); read != -1; read = in.read(chunk)) {
+                crc.update(chunk, 0, read);
+            }
+        }
+
+        return crc.getValue();
+    }
+}
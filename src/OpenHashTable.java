@@ -0,0 +1,300 @@
+/**
+ * An open-addressing hash table with the same operations as HashTable.
+ * Elements live in one flat array next to their cached hashes and are found by
+ * linear probing, so a lookup is a single pass over adjacent slots with no
+ * per-element nodes. Deletion shifts the following entries back instead of
+ * leaving tombstones.
+ */
+public class OpenHashTable<T> {
+    private static final double DEFAULT_LOAD_FACTOR = 0.6;
+    private static final int MIN_CAPACITY = 8;
+
+    private int numElements;
+    private Object[] elements;
+    private int[] hashes;
+    private final int initialCapacity;
+    private final double loadFactor;
+    private int threshold;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates an empty OpenHashTable
+     * @param size the number of elements expected in the table
+     * @throws IllegalArgumentException when size is negative
+     */
+    public OpenHashTable(int size) throws IllegalArgumentException {
+        this(size, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Creates an empty OpenHashTable that grows around the given load factor
+     * @param size the number of elements expected in the table
+     * @param loadFactor the fraction of slots that may be filled before the table grows
+     * @throws IllegalArgumentException when size is negative or loadFactor is not between 0 and 1
+     */
+    public OpenHashTable(int size, double loadFactor) throws IllegalArgumentException {
+        if (size < 0) {
+            throw new IllegalArgumentException("OpenHashTable cannot have a negative size");
+        }
+
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("OpenHashTable load factor must be between 0 and 1");
+        }
+
+        this.loadFactor = loadFactor;
+        this.initialCapacity = capacityFor(size, loadFactor);
+        clear();
+    }
+
+    /**
+     * Array constructor for an OpenHashTable
+     * @param array an array of elements to insert
+     * @param size the number of elements expected in the table
+     * @throws IllegalArgumentException when size is negative
+     */
+    public OpenHashTable(T[] array, int size) throws IllegalArgumentException {
+        this(size);
+
+        if (array == null) {
+            return;
+        }
+
+        for (T element : array) {
+            add(element);
+        }
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the number of elements in the OpenHashTable
+     * @return the number of elements
+     */
+    public int getNumElements() {
+        return numElements;
+    }
+
+    /**
+     * Accesses a specified element in the table
+     * @param element the element to locate
+     * @precondition element != null
+     * @return the slot where the element is located or -1 if it is not found
+     * @throws NullPointerException when the precondition is violated
+     */
+    public int find(T element) throws NullPointerException {
+        if (element == null) {
+            throw new NullPointerException("find(...): element cannot be null");
+        }
+
+        return slotOf(element, spread(element.hashCode()));
+    }
+
+    /**
+     * Accesses a specified key in the OpenHashTable
+     * @param element the key to search for
+     * @precondition element != null
+     * @return the value to which the specified key is mapped, or null if this table contains no mapping for the key
+     * @throws NullPointerException when the precondition is violated
+     */
+    @SuppressWarnings("unchecked")
+    public T get(T element) throws NullPointerException {
+        if (element == null) {
+            throw new NullPointerException("get(...): element cannot be null");
+        }
+
+        int slot = slotOf(element, spread(element.hashCode()));
+        return slot == -1 ? null : (T) elements[slot];
+    }
+
+    /**
+     * Determines whether a specified element is in the table
+     * @param element the element to locate
+     * @precondition element != null
+     * @throws NullPointerException when the precondition is violated
+     * @return whether the element is in the table
+     */
+    public boolean contains(T element) throws NullPointerException {
+        if (element == null) {
+            throw new NullPointerException("contains(): element cannot be null");
+        }
+
+        return slotOf(element, spread(element.hashCode())) != -1;
+    }
+
+    /**
+     * Probes for the slot holding an element
+     * @param element the element to locate
+     * @param hash the element's spread hash
+     * @return the slot of the element, or -1 if it is not in the table
+     */
+    private int slotOf(T element, int hash) {
+        if (numElements == 0) {
+            return -1;
+        }
+
+        int mask = elements.length - 1;
+
+        for (int slot = hash & mask; elements[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && element.equals(elements[slot])) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Mixes the high bits of a hash code into the low bits used for slot selection
+     * @param hashCode the object's hash code
+     * @return the spread hash
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the power-of-two number of slots that holds the given number of
+     * elements without passing the load factor
+     * @param size the number of elements
+     * @param loadFactor the load factor
+     * @return the number of slots
+     */
+    private static int capacityFor(int size, double loadFactor) {
+        long needed = (long) Math.ceil(size / loadFactor) + 1;
+        int capacity = MIN_CAPACITY;
+
+        while (capacity < needed && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Adds a new element to the OpenHashTable
+     * @param element the element to add
+     * @precondition element != null
+     * @throws NullPointerException when the precondition is violated
+     */
+    public void add(T element) throws NullPointerException {
+        if (element == null) {
+            throw new NullPointerException("add(): element is null");
+        }
+
+        if (elements == null) {
+            elements = new Object[initialCapacity];
+            hashes = new int[initialCapacity];
+        } else if (numElements >= threshold) {
+            resize(elements.length * 2);
+        }
+
+        insert(element, spread(element.hashCode()));
+        numElements++;
+    }
+
+    /**
+     * Places an element in the first free slot of its probe sequence
+     * @param element the element to place
+     * @param hash the element's spread hash
+     */
+    private void insert(Object element, int hash) {
+        int mask = elements.length - 1;
+        int slot = hash & mask;
+
+        while (elements[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+
+        elements[slot] = element;
+        hashes[slot] = hash;
+    }
+
+    /**
+     * Removes the given element from the table
+     * @param element the element to remove
+     * @precondition element != null
+     * @return whether element exists and was removed from the table
+     * @throws NullPointerException when the precondition is violated
+     */
+    public boolean delete(T element) throws NullPointerException {
+        if (element == null) {
+            throw new NullPointerException("delete(): element cannot be null");
+        }
+
+        int slot = slotOf(element, spread(element.hashCode()));
+
+        if (slot == -1) {
+            return false;
+        }
+
+        // Shift later members of the probe run back so no lookup stops early at the hole
+        int mask = elements.length - 1;
+        int hole = slot;
+
+        for (int next = (hole + 1) & mask; elements[next] != null; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                elements[hole] = elements[next];
+                hashes[hole] = hashes[next];
+                hole = next;
+            }
+        }
+
+        elements[hole] = null;
+        numElements--;
+
+        return true;
+    }
+
+    /**
+     * Resets the OpenHashTable to an empty state
+     */
+    public void clear() {
+        numElements = 0;
+        elements = null;
+        hashes = null;
+        threshold = (int) (initialCapacity * loadFactor);
+    }
+
+    /**
+     * Moves every element into a larger array of slots
+     * @param capacity the new number of slots
+     */
+    private void resize(int capacity) {
+        Object[] oldElements = elements;
+        int[] oldHashes = hashes;
+
+        elements = new Object[capacity];
+        hashes = new int[capacity];
+        threshold = (int) (capacity * loadFactor);
+
+        for (int i = 0; i < oldElements.length; i++) {
+            if (oldElements[i] != null) {
+                insert(oldElements[i], oldHashes[i]);
+            }
+        }
+    }
+
+    // **** ADDITIONAL METHODS **** //
+    /**
+     * Returns a string of the OpenHashTable
+     * @return a string of the OpenHashTable
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+
+        if (elements != null) {
+            for (Object element : elements) {
+                if (element != null) {
+                    str.append(element).append(" ");
+                }
+            }
+        }
+
+        str.append("\n");
+        return str.toString();
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects play events from any number of threads and applies them to the catalog in
+ * batches. Each played song gets a LongAdder, which spreads concurrent increments over
+ * separate cells instead of making threads contend for one field, and the first play
+ * since the last flush puts the song on a queue of dirty songs. flush() then visits only
+ * the dirty songs, moving each one's new plays into the Song through the Catalog so the
+ * play count index, the statistics, and the most-played chart stay current.
+ *
+ * recordPlays() may be called from any thread. flush() and getChart() touch the Catalog
+ * and must be called from the thread that owns it, as must forget(), which is called
+ * before a song is removed so that its counter does not outlive it.
+ */
+public class PlayTracker {
+    private final Catalog catalog;
+    private final SearchEngine searchEngine;
+    private final ConcurrentHashMap<Integer, Counter> counters;
+    private final ConcurrentLinkedQueue<Counter> dirty;
+
+    /**
+     * The plays of one song not yet flushed
+     */
+    private static class Counter {
+        private final Song song;
+        private final LongAdder plays = new LongAdder();
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        private Counter(Song song) {
+            this.song = song;
+        }
+    }
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates a PlayTracker with no plays recorded
+     * @param catalog the catalog whose songs are played
+     * @param searchEngine the search index over the catalog's songs
+     */
+    public PlayTracker(Catalog catalog, SearchEngine searchEngine) {
+        this.catalog = catalog;
+        this.searchEngine = searchEngine;
+        this.counters = new ConcurrentHashMap<>();
+        this.dirty = new ConcurrentLinkedQueue<>();
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns a song's plays including those recorded but not yet flushed
+     * @param song the song
+     * @return the play count
+     */
+    public long getPlays(Song song) {
+        Counter counter = counters.get(song.getId());
+        return song.getPlays() + (counter != null && counter.song == song ? counter.plays.sum() : 0);
+    }
+
+    /**
+     * Returns the most-played songs as of the last flush
+     * @param count the number of songs to return
+     * @return the songs, most plays first
+     * @throws IllegalArgumentException when count is negative
+     */
+    public ArrayList<Song> getChart(int count) throws IllegalArgumentException {
+        return catalog.getMostPlayed(count);
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Records one play of a song
+     * @param song the song, which must be indexed
+     * @throws IllegalArgumentException when the song is not indexed
+     */
+    public void recordPlay(Song song) throws IllegalArgumentException {
+        recordPlays(song, 1);
+    }
+
+    /**
+     * Records plays of a song. Safe to call from many threads at once.
+     * @param song the song, which must be indexed
+     * @param plays the number of plays
+     * @throws IllegalArgumentException when the song is not indexed or plays is negative
+     */
+    public void recordPlays(Song song, long plays) throws IllegalArgumentException {
+        if (song.getId() < 0) {
+            throw new IllegalArgumentException("recordPlays(): song is not indexed");
+        }
+
+        if (plays < 0) {
+            throw new IllegalArgumentException("recordPlays(): plays cannot be negative");
+        }
+
+        Counter counter = counters.get(song.getId());
+
+        if (counter == null || counter.song != song) {
+            // The ID may have belonged to a removed song, whose counter is replaced
+            counter = counters.compute(song.getId(), (id, old) -> old != null && old.song == song ? old : new Counter(song));
+        }
+
+        counter.plays.add(plays);
+
+        if (counter.queued.compareAndSet(false, true)) {
+            dirty.add(counter);
+        }
+    }
+
+    /**
+     * Moves every recorded play into its Song. Only songs played since the last flush are
+     * visited, and plays of songs no longer in the catalog are dropped.
+     * @return the number of songs whose play count changed
+     */
+    public int flush() {
+        int changed = 0;
+
+        for (Counter counter = dirty.poll(); counter != null; counter = dirty.poll()) {
+            // Clear the flag first, so a play recorded during the flush queues the song again
+            counter.queued.set(false);
+            long plays = counter.plays.sumThenReset();
+
+            if (plays > 0 && catalog.contains(counter.song)) {
+                catalog.modify(counter.song, song -> song.setPlays(song.getPlays() + plays));
+                changed++;
+            }
+        }
+
+        if (changed > 0) {
+            searchEngine.playsChanged();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Drops a song's counter and any plays of it not yet flushed. Called before the song
+     * is removed from the catalog and the search index, while it still has its ID, so the
+     * next song given that ID starts from its own play count.
+     * @param song the song
+     */
+    public void forget(Song song) {
+        Counter counter = counters.get(song.getId());
+
+        if (counter != null && counter.song == song) {
+            counters.remove(song.getId(), counter);
+            counter.plays.reset();
+        }
+    }
+}
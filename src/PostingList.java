@@ -0,0 +1,774 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted set of song IDs stored as variable-length encoded gaps in one byte array.
+ * Each entry is the ID's difference from the previous ID followed by the number of
+ * times the term occurs in that song, both written seven bits per byte with the
+ * high bit marking that more bytes follow, so a dense list costs about two bytes
+ * per song. A positional list also stores, after each frequency, the positions
+ * of the term in that song as gaps from the previous position, so phrases can be
+ * matched from the index alone. Appending an ID larger than every stored ID is
+ * O(1) amortized; other inserts and removes shift the bytes after the change.
+ * Every SKIP_INTERVAL IDs a skip entry records the ID and where the following
+ * bytes start, so a Cursor can jump ahead without decoding everything in between.
+ */
+public class PostingList {
+    public static final int SKIP_INTERVAL = 64;
+
+    private final boolean positional;
+    private byte[] data;
+    private int numBytes;
+    private int numIds;
+    private int lastId;
+    private int[] skipIds;
+    private int[] skipOffsets;
+    private int numSkips;
+    private boolean skipsValid;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates an empty PostingList without positions
+     */
+    public PostingList() {
+        this(false);
+    }
+
+    /**
+     * Creates an empty PostingList
+     * @param positional whether each entry stores the positions of the term
+     */
+    public PostingList(boolean positional) {
+        this.positional = positional;
+        data = new byte[4];
+        numBytes = 0;
+        numIds = 0;
+        lastId = -1;
+        skipIds = new int[0];
+        skipOffsets = new int[0];
+        numSkips = 0;
+        skipsValid = true;
+    }
+
+    /**
+     * Creates a PostingList from entries encoded by another PostingList, such as ones read
+     * back from writeTo(). Skip entries are rebuilt when the list is first walked.
+     * @param positional whether the entries store term positions
+     * @param data the encoded entries, which the list takes ownership of
+     * @param numIds the number of entries
+     * @param lastId the largest ID, or -1 if there are no entries
+     */
+    public PostingList(boolean positional, byte[] data, int numIds, int lastId) {
+        this.positional = positional;
+        this.data = data;
+        this.numBytes = data.length;
+        this.numIds = numIds;
+        this.lastId = lastId;
+        this.skipIds = new int[0];
+        this.skipOffsets = new int[0];
+        this.numSkips = 0;
+        this.skipsValid = false;
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the number of IDs in the list
+     * @return the number of IDs
+     */
+    public int size() {
+        return numIds;
+    }
+
+    /**
+     * Determines whether the list is empty
+     * @return whether the list is empty
+     */
+    public boolean isEmpty() {
+        return numIds == 0;
+    }
+
+    /**
+     * Determines whether the entries store term positions
+     * @return whether the list is positional
+     */
+    public boolean isPositional() {
+        return positional;
+    }
+
+    /**
+     * Returns the number of bytes used by the encoded entries
+     * @return the number of bytes
+     */
+    public int getNumBytes() {
+        return numBytes;
+    }
+
+    /**
+     * Returns the largest ID in the list
+     * @return the last ID, or -1 if the list is empty
+     */
+    public int getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Writes the encoded entries, getNumBytes() bytes in all
+     * @param out the output to write to
+     * @throws IOException when writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.write(data, 0, numBytes);
+    }
+
+    /**
+     * Determines whether the list contains an ID
+     * @param id the ID to look for
+     * @return whether the ID is in the list
+     */
+    public boolean contains(int id) {
+        if (id > lastId || id < 0) {
+            return false;
+        }
+
+        return new Cursor(this).advance(id) == id;
+    }
+
+    /**
+     * Decodes every ID in the list
+     * @return the IDs in ascending order
+     */
+    public int[] toArray() {
+        int[] ids = new int[numIds];
+        Cursor cursor = new Cursor(this);
+
+        for (int i = 0; i < numIds; i++) {
+            ids[i] = cursor.next();
+        }
+
+        return ids;
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Adds an ID to a list without positions
+     * @param id the ID to add
+     * @param frequency the number of times the term occurs in the song
+     * @precondition id >= 0 and frequency > 0
+     * @return whether the ID was added, or false if it was already in the list
+     * @throws IllegalArgumentException when the precondition is violated
+     * @throws IllegalStateException when the list is positional
+     */
+    public boolean add(int id, int frequency) throws IllegalArgumentException, IllegalStateException {
+        if (positional) {
+            throw new IllegalStateException("add(): positional lists need the term's positions");
+        }
+
+        if (frequency <= 0) {
+            throw new IllegalArgumentException("add(): frequency must be positive");
+        }
+
+        return insert(id, frequency, null);
+    }
+
+    /**
+     * Adds an ID to a positional list
+     * @param id the ID to add
+     * @param positions the positions of the term in the song, in ascending order
+     * @param frequency the number of positions to use from the array
+     * @precondition id >= 0, frequency > 0, and the first frequency positions are distinct, ascending, and non-negative
+     * @return whether the ID was added, or false if it was already in the list
+     * @throws IllegalArgumentException when the precondition is violated
+     * @throws IllegalStateException when the list is not positional
+     */
+    public boolean add(int id, int[] positions, int frequency) throws IllegalArgumentException, IllegalStateException {
+        if (!positional) {
+            throw new IllegalStateException("add(): list does not store positions");
+        }
+
+        if (frequency <= 0 || frequency > positions.length) {
+            throw new IllegalArgumentException("add(): frequency must be positive and fit the positions");
+        }
+
+        for (int i = 0; i < frequency; i++) {
+            if (positions[i] < 0 || (i > 0 && positions[i] <= positions[i - 1])) {
+                throw new IllegalArgumentException("add(): positions must be non-negative and ascending");
+            }
+        }
+
+        return insert(id, frequency, positions);
+    }
+
+    /**
+     * Adds an entry to the list
+     * @param id the ID to add
+     * @param frequency the number of times the term occurs in the song
+     * @param positions the term's positions, or null for a list without positions
+     * @return whether the ID was added, or false if it was already in the list
+     * @throws IllegalArgumentException when the ID is negative
+     */
+    private boolean insert(int id, int frequency, int[] positions) throws IllegalArgumentException {
+        if (id < 0) {
+            throw new IllegalArgumentException("add(): ID cannot be negative");
+        }
+
+        int maxEntryBytes = 5 * (positions == null ? 2 : 2 + frequency);
+
+        if (id > lastId) {
+            ensureCapacity(numBytes + maxEntryBytes);
+            numBytes = writeEntry(data, numBytes, id - lastId, frequency, positions);
+            lastId = id;
+            numIds++;
+
+            if (skipsValid && numIds % SKIP_INTERVAL == 0) {
+                addSkip(id, numBytes);
+            }
+
+            return true;
+        }
+
+        // Find the first stored ID at or above the new one
+        int previous = -1;
+        int pos = 0;
+
+        while (true) {
+            int current = previous + readVarInt(pos);
+
+            if (current == id) {
+                return false;
+            }
+
+            if (current > id) {
+                // The new entry goes here and the next entry's gap now starts from the new ID
+                byte[] encoded = new byte[maxEntryBytes + 5];
+                int length = writeEntry(encoded, 0, id - previous, frequency, positions);
+                length = writeVarInt(encoded, length, current - id);
+
+                replace(pos, skipVarInt(pos), encoded, length);
+                numIds++;
+                skipsValid = false;
+                return true;
+            }
+
+            previous = current;
+            pos = skipEntry(pos);
+        }
+    }
+
+    /**
+     * Appends every entry of another list with its IDs shifted by an offset. Only the
+     * first entry is re-encoded; the rest are copied as bytes, since their gaps do not change.
+     * @param other the list to append
+     * @param offset the amount to add to each of the other list's IDs
+     * @precondition both lists store positions or neither does, and every shifted ID is above every ID in this list
+     * @throws IllegalArgumentException when the precondition is violated
+     */
+    public void appendAll(PostingList other, int offset) throws IllegalArgumentException {
+        if (other.positional != positional) {
+            throw new IllegalArgumentException("appendAll(): lists must both store positions or both not");
+        }
+
+        if (other.numIds == 0) {
+            return;
+        }
+
+        int first = other.readVarInt(0) - 1 + offset;
+        if (first <= lastId) {
+            throw new IllegalArgumentException("appendAll(): appended IDs must be above every ID in the list");
+        }
+
+        int rest = other.skipVarInt(0);
+        int start = numBytes;
+
+        ensureCapacity(numBytes + 5 + other.numBytes - rest);
+        numBytes = writeVarInt(data, numBytes, first - lastId);
+        System.arraycopy(other.data, rest, data, numBytes, other.numBytes - rest);
+        numBytes += other.numBytes - rest;
+
+        if (skipsValid) {
+            // Skip entries depend on how many IDs come before, so walk the appended entries to place them
+            int current = lastId;
+
+            for (int pos = start; pos < numBytes; ) {
+                current += readVarInt(pos);
+                pos = skipEntry(pos);
+                numIds++;
+
+                if (numIds % SKIP_INTERVAL == 0) {
+                    addSkip(current, pos);
+                }
+            }
+        } else {
+            numIds += other.numIds;
+        }
+
+        lastId = other.lastId + offset;
+    }
+
+    /**
+     * Removes an ID from the list
+     * @param id the ID to remove
+     * @return whether the ID was in the list and has been removed
+     */
+    public boolean remove(int id) {
+        if (id > lastId || id < 0) {
+            return false;
+        }
+
+        int previous = -1;
+        int pos = 0;
+
+        while (pos < numBytes) {
+            int current = previous + readVarInt(pos);
+            int next = skipEntry(pos);
+
+            if (current > id) {
+                return false;
+            }
+
+            if (current == id) {
+                if (next == numBytes) {
+                    numBytes = pos;
+                    lastId = previous;
+                } else {
+                    // Fold the removed gap into the gap of the following entry
+                    byte[] encoded = new byte[5];
+                    int length = writeVarInt(encoded, 0, current + readVarInt(next) - previous);
+                    replace(pos, skipVarInt(next), encoded, length);
+                }
+
+                numIds--;
+                skipsValid = false;
+                return true;
+            }
+
+            previous = current;
+            pos = next;
+        }
+
+        return false;
+    }
+
+    /**
+     * Replaces the bytes in [start, end) with new bytes
+     * @param start the first byte to replace
+     * @param end one past the last byte to replace
+     * @param encoded the bytes to write
+     * @param length the number of bytes to write
+     */
+    private void replace(int start, int end, byte[] encoded, int length) {
+        int shift = length - (end - start);
+        ensureCapacity(numBytes + shift);
+        System.arraycopy(data, end, data, end + shift, numBytes - end);
+        System.arraycopy(encoded, 0, data, start, length);
+        numBytes += shift;
+    }
+
+    /**
+     * Appends a skip entry
+     * @param id the ID the entry points past
+     * @param offset the offset of the byte after that ID's entry
+     */
+    private void addSkip(int id, int offset) {
+        if (numSkips == skipIds.length) {
+            skipIds = Arrays.copyOf(skipIds, Math.max(4, numSkips * 2));
+            skipOffsets = Arrays.copyOf(skipOffsets, skipIds.length);
+        }
+
+        skipIds[numSkips] = id;
+        skipOffsets[numSkips] = offset;
+        numSkips++;
+    }
+
+    /**
+     * Recomputes the skip entries after an insert or remove in the middle of the list
+     */
+    private void rebuildSkips() {
+        numSkips = 0;
+        skipsValid = true;
+
+        int current = -1;
+        int count = 0;
+
+        for (int pos = 0; pos < numBytes; ) {
+            current += readVarInt(pos);
+            pos = skipEntry(pos);
+            count++;
+
+            if (count % SKIP_INTERVAL == 0) {
+                addSkip(current, pos);
+            }
+        }
+    }
+
+    /**
+     * Grows the byte array to hold at least the given number of bytes
+     * @param capacity the number of bytes needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+
+    /**
+     * Releases unused capacity at the end of the byte array
+     */
+    public void trimToSize() {
+        if (data.length > numBytes) {
+            data = Arrays.copyOf(data, numBytes);
+        }
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Compares two lists by their entries
+     * @param obj the object to compare to
+     * @return whether obj is a PostingList with the same IDs, frequencies, and positions
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof PostingList)) {
+            return false;
+        }
+
+        PostingList other = (PostingList) obj;
+
+        return positional == other.positional && numIds == other.numIds
+                && Arrays.equals(data, 0, numBytes, other.data, 0, other.numBytes);
+    }
+
+    /**
+     * Computes a hash code from the list's entries
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        int hash = Boolean.hashCode(positional);
+
+        for (int i = 0; i < numBytes; i++) {
+            hash = 31 * hash + data[i];
+        }
+
+        return hash;
+    }
+
+    /**
+     * Decodes the number starting at a byte offset
+     * @param pos the offset of the number's first byte
+     * @return the number
+     */
+    private int readVarInt(int pos) {
+        int value = 0;
+
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos++];
+            value |= (b & 0x7F) << shift;
+
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the offset just past the encoded number starting at a byte offset
+     * @param pos the offset of the number's first byte
+     * @return the offset of the next number
+     */
+    private int skipVarInt(int pos) {
+        while (data[pos++] < 0) {
+            // continuation bytes have the high bit set
+        }
+
+        return pos;
+    }
+
+    /**
+     * Returns the offset just past the entry starting at a byte offset
+     * @param pos the offset of the entry's first byte
+     * @return the offset of the next entry
+     */
+    private int skipEntry(int pos) {
+        pos = skipVarInt(pos);
+
+        if (!positional) {
+            return skipVarInt(pos);
+        }
+
+        int frequency = readVarInt(pos);
+        pos = skipVarInt(pos);
+
+        for (int i = 0; i < frequency; i++) {
+            pos = skipVarInt(pos);
+        }
+
+        return pos;
+    }
+
+    /**
+     * Writes one entry: the ID gap, the frequency, and the position gaps if there are positions
+     * @param bytes the array to write to
+     * @param pos the offset to write at
+     * @param gap the difference from the previous ID
+     * @param frequency the number of times the term occurs in the song
+     * @param positions the term's positions, or null for a list without positions
+     * @return the offset just past the written bytes
+     */
+    private static int writeEntry(byte[] bytes, int pos, int gap, int frequency, int[] positions) {
+        pos = writeVarInt(bytes, pos, gap);
+        pos = writeVarInt(bytes, pos, frequency);
+
+        if (positions != null) {
+            int previous = 0;
+
+            for (int i = 0; i < frequency; i++) {
+                pos = writeVarInt(bytes, pos, positions[i] - previous);
+                previous = positions[i];
+            }
+        }
+
+        return pos;
+    }
+
+    /**
+     * Writes a non-negative int seven bits at a time, low bits first
+     * @param bytes the array to write to
+     * @param pos the offset to write at
+     * @param value the value to write
+     * @return the offset just past the written bytes
+     */
+    private static int writeVarInt(byte[] bytes, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        bytes[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Walks the entries of a PostingList in ascending ID order, decoding them in place.
+     * The list must not be modified while a Cursor is in use.
+     */
+    public static class Cursor {
+        public static final int END = -1;
+
+        private byte[] data;
+        private int pos;
+        private int end;
+        private int current;
+        private int frequency;
+        private boolean positional;
+        private int positionsStart;
+        private int[] positions;
+        private int size;
+        private int[] skipIds;
+        private int[] skipOffsets;
+        private int numSkips;
+        private int skip;
+
+        /**
+         * Creates a Cursor positioned before the first ID of a list
+         * @param list the list to walk
+         */
+        public Cursor(PostingList list) {
+            reset(list);
+        }
+
+        /**
+         * Moves the Cursor back before the first ID of a list, so one Cursor can be reused
+         * @param list the list to walk
+         */
+        public void reset(PostingList list) {
+            if (!list.skipsValid) {
+                list.rebuildSkips();
+            }
+
+            data = list.data;
+            pos = 0;
+            end = list.numBytes;
+            current = -1;
+            frequency = 0;
+            positional = list.positional;
+            positionsStart = -1;
+            positions = new int[4];
+            size = list.numIds;
+            skipIds = list.skipIds;
+            skipOffsets = list.skipOffsets;
+            numSkips = list.numSkips;
+            skip = 0;
+        }
+
+        /**
+         * Returns the number of IDs in the list being walked
+         * @return the number of IDs
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Advances to the next ID
+         * @return the next ID, or END when there are no more
+         */
+        public int next() {
+            if (pos >= end) {
+                current = END;
+                return END;
+            }
+
+            current += readVarInt();
+            frequency = readVarInt();
+
+            if (positional) {
+                // Positions are decoded only if asked for
+                positionsStart = pos;
+
+                for (int i = 0; i < frequency; i++) {
+                    while (data[pos++] < 0) {
+                        // continuation bytes have the high bit set
+                    }
+                }
+            }
+
+            return current;
+        }
+
+        /**
+         * Advances to the first ID at or above a target. Whole blocks of IDs below
+         * the target are passed over with the skip entries, found by galloping
+         * search, so the cost grows with the log of the distance moved.
+         * @param target the ID to advance to
+         * @return the first ID at or above the target, or END when there is none
+         */
+        public int advance(int target) {
+            if (current == END && pos >= end) {
+                return END;
+            }
+
+            if (current >= target) {
+                return current;
+            }
+
+            if (skip < numSkips && skipIds[skip] < target) {
+                // Gallop to bracket the last skip entry below the target, then binary search
+                int step = 1;
+                int low = skip;
+                int high = skip + 1;
+
+                while (high < numSkips && skipIds[high] < target) {
+                    low = high;
+                    step *= 2;
+                    high = low + step;
+                }
+
+                high = Math.min(high, numSkips);
+
+                while (high - low > 1) {
+                    int mid = (low + high) >>> 1;
+
+                    if (skipIds[mid] < target) {
+                        low = mid;
+                    } else {
+                        high = mid;
+                    }
+                }
+
+                if (skipOffsets[low] > pos) {
+                    pos = skipOffsets[low];
+                    current = skipIds[low];
+                }
+
+                skip = low + 1;
+            }
+
+            int id;
+
+            do {
+                id = next();
+            } while (id != END && id < target);
+
+            return id;
+        }
+
+        /**
+         * Returns the ID the Cursor is on
+         * @return the current ID, or END before the first call to next() and after the last ID
+         */
+        public int current() {
+            return current;
+        }
+
+        /**
+         * Returns the number of times the term occurs in the current song
+         * @precondition next() has returned an ID
+         * @return the term frequency
+         * @throws NoSuchElementException when the precondition is violated
+         */
+        public int frequency() throws NoSuchElementException {
+            if (current < 0) {
+                throw new NoSuchElementException("frequency(): cursor is not on an ID");
+            }
+
+            return frequency;
+        }
+
+        /**
+         * Decodes the positions of the term in the current song. The returned buffer
+         * is reused, so it stays valid only until the Cursor moves.
+         * @precondition the list is positional and next() has returned an ID
+         * @return a buffer whose first frequency() elements are the positions in ascending order
+         * @throws IllegalStateException when the list is not positional
+         * @throws NoSuchElementException when the Cursor is not on an ID
+         */
+        public int[] positions() throws IllegalStateException, NoSuchElementException {
+            if (!positional) {
+                throw new IllegalStateException("positions(): list does not store positions");
+            }
+
+            if (current < 0) {
+                throw new NoSuchElementException("positions(): cursor is not on an ID");
+            }
+
+            if (positions.length < frequency) {
+                positions = new int[Math.max(frequency, positions.length * 2)];
+            }
+
+            int resume = pos;
+            pos = positionsStart;
+
+            int position = 0;
+            for (int i = 0; i < frequency; i++) {
+                position += readVarInt();
+                positions[i] = position;
+            }
+
+            pos = resume;
+            return positions;
+        }
+
+        /**
+         * Decodes the number at the Cursor and moves past it
+         * @return the number
+         */
+        private int readVarInt() {
+            int value = 0;
+
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[pos++];
+                value |= (b & 0x7F) << shift;
+
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Completes prefixes to the highest-weighted terms of a TermDictionary. Term IDs are
+ * kept in sorted term order, so the terms starting with a prefix form one range found
+ * by binary search, and a segment tree over the weights in that order finds the best
+ * term of any range in O(log n). The best k completions then cost O(log n + k log k)
+ * and never look at the other terms in the range. The sorted order also lets
+ * findWithin() share edit distance work between terms with a common prefix.
+ * The index is a snapshot: it must be rebuilt when terms or weights change.
+ */
+public class PrefixIndex {
+    private final TermDictionary dictionary;
+    private final int[] sortedIds;
+    private final long[] weights;
+    private final int[] tree;
+    private final int numTerms;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates a PrefixIndex over every term of a dictionary
+     * @param dictionary the terms to complete to
+     * @param termWeights the weight of each term, indexed by term ID; terms weighing 0 are never suggested
+     * @throws IllegalArgumentException when there are fewer weights than terms
+     */
+    public PrefixIndex(TermDictionary dictionary, long[] termWeights) throws IllegalArgumentException {
+        if (termWeights.length < dictionary.size()) {
+            throw new IllegalArgumentException("PrefixIndex needs a weight for every term");
+        }
+
+        this.dictionary = dictionary;
+        this.numTerms = dictionary.size();
+
+        Integer[] order = new Integer[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, this::compareTerms);
+
+        this.sortedIds = new int[numTerms];
+        this.weights = new long[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            sortedIds[i] = order[i];
+            weights[i] = termWeights[order[i]];
+        }
+
+        // Leaves are at numTerms..2*numTerms-1 and each inner node holds the position of its heavier child
+        this.tree = new int[2 * numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            tree[numTerms + i] = i;
+        }
+
+        for (int node = numTerms - 1; node > 0; node--) {
+            tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the number of terms in the index
+     * @return the number of terms
+     */
+    public int size() {
+        return numTerms;
+    }
+
+    /**
+     * Finds the highest-weighted terms starting with a prefix. Equal weights are
+     * broken alphabetically.
+     * @param prefix the prefix, in the same case as the terms
+     * @param numResults the maximum number of terms to return
+     * @return the completions, highest weight first
+     */
+    public ArrayList<String> complete(CharSequence prefix, int numResults) {
+        ArrayList<String> results = new ArrayList<>();
+        int low = lowerBound(prefix, false);
+        int high = lowerBound(prefix, true);
+
+        if (low >= high || numResults <= 0) {
+            return results;
+        }
+
+        // Each entry is a range of positions and the position of its heaviest term
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((range1, range2) -> heavier(range1[2], range2[2]) == range1[2] ? -1 : 1);
+        ranges.add(new int[] {low, high, rangeMax(low, high)});
+
+        while (results.size() < numResults && !ranges.isEmpty()) {
+            int[] range = ranges.poll();
+            int best = range[2];
+
+            if (weights[best] <= 0) {
+                break;
+            }
+
+            results.add(dictionary.getTerm(sortedIds[best]));
+
+            if (range[0] < best) {
+                ranges.add(new int[] {range[0], best, rangeMax(range[0], best)});
+            }
+
+            if (best + 1 < range[1]) {
+                ranges.add(new int[] {best + 1, range[1], rangeMax(best + 1, range[1])});
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Finds the terms within a Levenshtein distance of a word. The sorted terms are walked
+     * like a trie: one row of the edit distance table is kept per character of the current
+     * term, rows are reused for the prefix shared with the previous term, and once every
+     * entry of a row exceeds the limit all terms sharing that prefix are skipped at once.
+     * @param word the word, in the same case as the terms
+     * @param maxDistance the largest number of single-character insertions, deletions, or substitutions
+     * @return the IDs of the matching terms, in sorted term order
+     * @throws IllegalArgumentException when maxDistance is negative
+     */
+    public int[] findWithin(CharSequence word, int maxDistance) throws IllegalArgumentException {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("findWithin(): distance cannot be negative");
+        }
+
+        int wordLength = word.length();
+        int[][] rows = new int[16][];
+        rows[0] = new int[wordLength + 1];
+        for (int i = 0; i <= wordLength; i++) {
+            rows[0][i] = i;
+        }
+
+        int[] matches = new int[8];
+        int numMatches = 0;
+        int previousId = -1;
+        int validRows = 0;
+        int position = 0;
+
+        while (position < numTerms) {
+            int id = sortedIds[position];
+            int length = dictionary.getTermLength(id);
+            int depth = Math.min(validRows, commonPrefixLength(previousId, id));
+            boolean pruned = false;
+
+            for (depth++; depth <= length; depth++) {
+                if (depth == rows.length) {
+                    rows = Arrays.copyOf(rows, depth * 2);
+                }
+
+                if (rows[depth] == null) {
+                    rows[depth] = new int[wordLength + 1];
+                }
+
+                int[] above = rows[depth - 1];
+                int[] row = rows[depth];
+                char c = dictionary.charAt(id, depth - 1);
+                int rowMin = row[0] = depth;
+
+                for (int i = 1; i <= wordLength; i++) {
+                    int substitute = above[i - 1] + (word.charAt(i - 1) == c ? 0 : 1);
+                    row[i] = Math.min(substitute, Math.min(above[i], row[i - 1]) + 1);
+                    rowMin = Math.min(rowMin, row[i]);
+                }
+
+                if (rowMin > maxDistance) {
+                    // No extension of this prefix can get back under the limit
+                    validRows = depth - 1;
+                    position = endOfPrefix(position, id, depth);
+                    pruned = true;
+                    break;
+                }
+            }
+
+            previousId = id;
+
+            if (pruned) {
+                continue;
+            }
+
+            validRows = length;
+
+            if (rows[length][wordLength] <= maxDistance) {
+                if (numMatches == matches.length) {
+                    matches = Arrays.copyOf(matches, numMatches * 2);
+                }
+
+                matches[numMatches++] = id;
+            }
+
+            position++;
+        }
+
+        return Arrays.copyOf(matches, numMatches);
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Returns the number of leading characters two terms share
+     * @param id1 the first term's ID, or -1 for no term
+     * @param id2 the second term's ID
+     * @return the length of the common prefix
+     */
+    private int commonPrefixLength(int id1, int id2) {
+        if (id1 == -1) {
+            return 0;
+        }
+
+        int length = Math.min(dictionary.getTermLength(id1), dictionary.getTermLength(id2));
+
+        for (int i = 0; i < length; i++) {
+            if (dictionary.charAt(id1, i) != dictionary.charAt(id2, i)) {
+                return i;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Finds the first sorted position after a term that does not share the term's first characters
+     * @param from the term's sorted position
+     * @param id the term's ID
+     * @param length the number of leading characters to share
+     * @return the position
+     */
+    private int endOfPrefix(int from, int id, int length) {
+        int low = from + 1;
+        int high = numTerms;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (commonPrefixLength(id, sortedIds[mid]) >= length) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Finds the first sorted position whose term is not before the prefix's range
+     * @param prefix the prefix
+     * @param pastPrefix whether to skip the terms that start with the prefix too
+     * @return the position
+     */
+    private int lowerBound(CharSequence prefix, boolean pastPrefix) {
+        int low = 0;
+        int high = numTerms;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(sortedIds[mid], prefix);
+
+            if (cmp < 0 || (pastPrefix && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Compares the start of a term with a prefix
+     * @param id the term's ID
+     * @param prefix the prefix
+     * @return a negative number, zero, or a positive number as the term sorts before, starts with, or sorts after the prefix
+     */
+    private int comparePrefix(int id, CharSequence prefix) {
+        int length = dictionary.getTermLength(id);
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (i == length) {
+                return -1;
+            }
+
+            int cmp = Character.compare(dictionary.charAt(id, i), prefix.charAt(i));
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Compares two terms alphabetically
+     * @param id1 the first term's ID
+     * @param id2 the second term's ID
+     * @return a negative number, zero, or a positive number as the first term sorts before, equal to, or after the second
+     */
+    private int compareTerms(int id1, int id2) {
+        int length1 = dictionary.getTermLength(id1);
+        int length2 = dictionary.getTermLength(id2);
+
+        for (int i = 0; i < Math.min(length1, length2); i++) {
+            int cmp = Character.compare(dictionary.charAt(id1, i), dictionary.charAt(id2, i));
+
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+
+        return Integer.compare(length1, length2);
+    }
+
+    /**
+     * Finds the position of the heaviest term in a range of sorted positions
+     * @param from the first position of the range
+     * @param to one past the last position of the range
+     * @return the position of the heaviest term
+     */
+    private int rangeMax(int from, int to) {
+        int best = from;
+
+        for (int left = from + numTerms, right = to + numTerms; left < right; left >>= 1, right >>= 1) {
+            if ((left & 1) == 1) {
+                best = heavier(best, tree[left++]);
+            }
+
+            if ((right & 1) == 1) {
+                best = heavier(best, tree[--right]);
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Picks the heavier of two sorted positions, or the earlier one if they weigh the same
+     * @param position1 the first position
+     * @param position2 the second position
+     * @return the heavier position
+     */
+    private int heavier(int position1, int position2) {
+        if (weights[position1] != weights[position2]) {
+            return weights[position1] > weights[position2] ? position1 : position2;
+        }
+
+        return Math.min(position1, position2);
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A parsed keyword query. Words are required by default, so "hot topic" matches
+ * songs containing both words. OR separates alternatives, and NOT or a leading
+ * '-' excludes the word that follows. AND may be written but is implied.
+ * Text in double quotes is a phrase whose words must appear next to each other in
+ * order; a phrase followed by ~N instead needs its words within N extra words of
+ * each other, in any order. Phrases can be excluded like words.
+ * Each word is tokenized the same way as indexed text, and stop words are dropped.
+ * Within a phrase a dropped stop word still takes up its place, so "liked a boy"
+ * matches "liked" two words before "boy".
+ */
+public class Query {
+    public static final int MAX_SLOP = 1000;
+
+    /**
+     * Words that must appear close together, in order unless slop is allowed
+     */
+    public static class Phrase {
+        private final ArrayList<String> words;
+        private final int[] offsets;
+        private final int slop;
+
+        /**
+         * Creates a Phrase
+         * @param words the words of the phrase, without stop words
+         * @param offsets the position of each word within the phrase, counting stop words
+         * @param slop the number of extra words allowed between the words, or 0 for an exact phrase
+         */
+        public Phrase(ArrayList<String> words, int[] offsets, int slop) {
+            this.words = words;
+            this.offsets = offsets;
+            this.slop = slop;
+        }
+
+        /**
+         * Returns the words of the phrase
+         * @return the words, in phrase order
+         */
+        public ArrayList<String> getWords() {
+            return words;
+        }
+
+        /**
+         * Returns the position of a word within the phrase
+         * @param index the index of the word in getWords()
+         * @return the word's position, counting stop words
+         */
+        public int getOffset(int index) {
+            return offsets[index];
+        }
+
+        /**
+         * Returns the number of positions the phrase spans from its first word to its last
+         * @return the span
+         */
+        public int getSpan() {
+            return offsets[offsets.length - 1] - offsets[0];
+        }
+
+        /**
+         * Returns the number of extra words allowed between the words of the phrase
+         * @return the slop, or 0 for an exact phrase
+         */
+        public int getSlop() {
+            return slop;
+        }
+    }
+
+    /**
+     * One alternative of a query: the songs containing every required word
+     * and none of the excluded ones
+     */
+    public static class Clause {
+        private final ArrayList<String> required;
+        private final ArrayList<String> excluded;
+        private final ArrayList<Phrase> phrases;
+        private final ArrayList<Phrase> excludedPhrases;
+
+        public Clause() {
+            required = new ArrayList<>();
+            excluded = new ArrayList<>();
+            phrases = new ArrayList<>();
+            excludedPhrases = new ArrayList<>();
+        }
+
+        /**
+         * Returns the words a matching song must contain
+         * @return the required words
+         */
+        public ArrayList<String> getRequired() {
+            return required;
+        }
+
+        /**
+         * Returns the words a matching song must not contain
+         * @return the excluded words
+         */
+        public ArrayList<String> getExcluded() {
+            return excluded;
+        }
+
+        /**
+         * Returns the phrases a matching song must contain
+         * @return the required phrases
+         */
+        public ArrayList<Phrase> getPhrases() {
+            return phrases;
+        }
+
+        /**
+         * Returns the phrases a matching song must not contain
+         * @return the excluded phrases
+         */
+        public ArrayList<Phrase> getExcludedPhrases() {
+            return excludedPhrases;
+        }
+
+        /**
+         * Determines whether the clause has no words left after stop words were dropped
+         * @return whether the clause is empty
+         */
+        public boolean isEmpty() {
+            return required.isEmpty() && excluded.isEmpty() && phrases.isEmpty() && excludedPhrases.isEmpty();
+        }
+    }
+
+    private final ArrayList<Clause> clauses;
+
+    /**
+     * Creates a Query from already parsed clauses
+     * @param clauses the alternatives of the query
+     */
+    public Query(ArrayList<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    /**
+     * Parses query text. An unclosed quote runs to the end of the text,
+     * and a slop above MAX_SLOP is lowered to MAX_SLOP.
+     * @param text the query text
+     * @return the parsed Query
+     */
+    public static Query parse(String text) {
+        ArrayList<Clause> clauses = new ArrayList<>();
+        Clause clause = new Clause();
+        Tokenizer tokenizer = new Tokenizer();
+        boolean negate = false;
+        int index = 0;
+
+        while (index < text.length()) {
+            if (Character.isWhitespace(text.charAt(index))) {
+                index++;
+                continue;
+            }
+
+            if (text.startsWith("-\"", index)) {
+                negate = true;
+                index++;
+            }
+
+            if (text.charAt(index) == '"') {
+                int close = text.indexOf('"', index + 1);
+                if (close == -1) {
+                    close = text.length();
+                }
+
+                String phrase = text.substring(index + 1, close);
+                int slop = 0;
+                index = close + 1;
+
+                if (index < text.length() && text.charAt(index) == '~') {
+                    for (index++; index < text.length() && Character.isDigit(text.charAt(index)); index++) {
+                        slop = Math.min(MAX_SLOP, slop * 10 + (text.charAt(index) - '0'));
+                    }
+                }
+
+                addPhrase(clause, tokenizer, phrase, slop, negate);
+                negate = false;
+                continue;
+            }
+
+            int end = index;
+            while (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+                end++;
+            }
+
+            String word = text.substring(index, end);
+            index = end;
+
+            if (word.equals("OR")) {
+                clauses.add(clause);
+                clause = new Clause();
+                negate = false;
+                continue;
+            }
+
+            if (word.equals("AND")) {
+                continue;
+            }
+
+            if (word.equals("NOT")) {
+                negate = true;
+                continue;
+            }
+
+            if (word.length() > 1 && word.charAt(0) == '-') {
+                negate = true;
+                word = word.substring(1);
+            }
+
+            tokenizer.reset(word);
+
+            while (tokenizer.next()) {
+                String token = tokenizer.getToken();
+
+                if (!SearchEngine.stopWordsContains(token)) {
+                    (negate ? clause.excluded : clause.required).add(token);
+                }
+            }
+
+            negate = false;
+        }
+
+        clauses.add(clause);
+        return new Query(clauses);
+    }
+
+    /**
+     * Adds a quoted phrase to a clause. A phrase left with one word is added as a plain word.
+     * @param clause the clause to add to
+     * @param tokenizer the tokenizer to split the phrase with
+     * @param text the text between the quotes
+     * @param slop the number of extra words allowed between the words
+     * @param negate whether the phrase is excluded
+     */
+    private static void addPhrase(Clause clause, Tokenizer tokenizer, String text, int slop, boolean negate) {
+        ArrayList<String> words = new ArrayList<>();
+        int[] offsets = new int[8];
+
+        tokenizer.reset(text);
+
+        while (tokenizer.next()) {
+            String token = tokenizer.getToken();
+
+            if (SearchEngine.stopWordsContains(token)) {
+                continue;
+            }
+
+            if (words.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+
+            offsets[words.size()] = tokenizer.getPosition();
+            words.add(token);
+        }
+
+        if (words.size() == 1) {
+            (negate ? clause.excluded : clause.required).add(words.get(0));
+        } else if (words.size() > 1) {
+            Phrase phrase = new Phrase(words, Arrays.copyOf(offsets, words.size()), slop);
+            (negate ? clause.excludedPhrases : clause.phrases).add(phrase);
+        }
+    }
+
+    /**
+     * Returns the alternatives of the query
+     * @return the clauses
+     */
+    public ArrayList<Clause> getClauses() {
+        return clauses;
+    }
+}
@@ -1,6 +1,11 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToDoubleFunction;
 
 public class SearchEngine {
     private static final List<String> stopWords = Arrays.asList("a", "about", "across", "after", "all", "almost", "also", "am", "an", "and", "any", "are",
@@ -15,23 +20,212 @@ public class SearchEngine {
             "their", "them", "then", "there", "these", "they", "this", "those", "through", "to", "too",
             "under", "until", "up", "very", "was", "we", "were", "what", "when", "where", "which",
             "while", "who", "whom", "why", "will", "with", "would", "yet", "you", "your", "yours");
-    private HashTable<WordID> wordIDs;
-    private ArrayList<BST<Song>> invertedIndex;
+    private static final TermDictionary stopWordIDs = new TermDictionary(stopWords.size());
+    public static final int NUM_FIELDS = 4;
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+    // Larger than any phrase span plus Query.MAX_SLOP, so phrases never match across fields
+    private static final int FIELD_POSITION_GAP = 1 << 16;
+    private static final int MIN_SHARD_SIZE = 256;
+    private TermDictionary wordIDs;
+    private ArrayList<PostingList> invertedIndex;
+    private ArrayList<Song> songs;
+    private ArrayList<int[]> songTerms;
+    private int[] freeIds;
+    private int numFreeIds;
     private final int tableSize;
+    private final boolean positional;
+    private final Tokenizer tokenizer;
+    private int[] termMarks;
+    private int[] termCounts;
+    private int currentMark;
+    private int[][] fieldLengths;
+    private long[] totalFieldLengths;
+    private long[] tokenPositions;
+    private PrefixIndex frequencyCompletions;
+    private PrefixIndex playCompletions;
+    private IndexSegment segment;
+
+    static {
+        for (String word : stopWords) {
+            stopWordIDs.add(word);
+        }
+    }
 
     /**
-     * Constructs a new SearchEngine object with the given songs and table size.
+     * Constructs a new SearchEngine object with the given songs and table size,
+     * without word positions. Songs are given IDs in list order.
      * @param allSongs the list of all songs to index
-     * @param tableSize the size of the hash table for word IDs
+     * @param tableSize the number of distinct words to make room for
      */
     public SearchEngine(ArrayList<Song> allSongs, int tableSize) {
-        this.wordIDs = new HashTable<>(tableSize);
-        this.invertedIndex = new ArrayList<>(tableSize);
+        this(allSongs, tableSize, false);
+    }
+
+    /**
+     * Constructs a new SearchEngine object with the given songs and table size.
+     * Songs are given IDs in list order.
+     * @param allSongs the list of all songs to index
+     * @param tableSize the number of distinct words to make room for
+     * @param positional whether to store word positions, which phrase queries need
+     */
+    public SearchEngine(ArrayList<Song> allSongs, int tableSize, boolean positional) {
         this.tableSize = tableSize;
+        this.positional = positional;
+        this.tokenizer = new Tokenizer();
+        this.tokenPositions = new long[positional ? 64 : 0];
 
-        for (Song song : allSongs) {
-            indexSong(song);
+        rebuild(allSongs);
+    }
+
+    /**
+     * Constructs a new SearchEngine object with the given songs and table size,
+     * indexing the songs in parallel. The index is the same as the other constructors build.
+     * @param allSongs the list of all songs to index, none of them repeated
+     * @param tableSize the number of distinct words to make room for
+     * @param positional whether to store word positions, which phrase queries need
+     * @param pool the pool to index the songs on
+     */
+    public SearchEngine(ArrayList<Song> allSongs, int tableSize, boolean positional, ForkJoinPool pool) {
+        this.tableSize = tableSize;
+        this.positional = positional;
+        this.tokenizer = new Tokenizer();
+        this.tokenPositions = new long[positional ? 64 : 0];
+
+        rebuild(allSongs, pool);
+    }
+
+    /**
+     * Constructs a SearchEngine served from an index segment written by save(). Only the
+     * term dictionary is read up front; posting lists are read from the mapped file the
+     * first time a query uses them, and the whole index is read into memory the first
+     * time it is changed.
+     * @param segmentFile the segment file
+     * @param sourceChecksum the checksum the segment must have been saved with
+     * @param allSongs the indexed songs in ID order, as the saved index held them
+     * @param tableSize the number of distinct words to make room for
+     * @throws IOException when the segment cannot be read, is not valid, was saved with a different
+     *         checksum, or does not hold as many songs as allSongs
+     */
+    public SearchEngine(Path segmentFile, long sourceChecksum, ArrayList<Song> allSongs, int tableSize) throws IOException {
+        this(new IndexSegment(segmentFile), sourceChecksum, allSongs, tableSize);
+    }
+
+    /**
+     * Constructs a SearchEngine served from an index segment that is already open. Parts
+     * of the segment are checked against their checksums as they are first read, so any
+     * query or change may throw UncheckedIOException if the file turns out to be damaged;
+     * the index should then be rebuilt from the songs.
+     * @param opened the open segment
+     * @param sourceChecksum the checksum the segment must have been saved with
+     * @param allSongs the indexed songs in ID order, as the saved index held them
+     * @param tableSize the number of distinct words to make room for
+     * @throws IOException when the segment was saved with a different checksum or does not
+     *         hold as many songs as allSongs
+     */
+    public SearchEngine(IndexSegment opened, long sourceChecksum, ArrayList<Song> allSongs, int tableSize) throws IOException {
+        if (opened.getSourceChecksum() != sourceChecksum) {
+            throw new IOException("Index segment was built from different data: " + opened.getFile());
+        }
+
+        int[] savedFreeIds = opened.readFreeIds();
+        if (opened.getNumSongs() - savedFreeIds.length != allSongs.size()) {
+            throw new IOException("Index segment holds a different number of songs: " + opened.getFile());
+        }
+
+        this.tableSize = tableSize;
+        this.positional = opened.isPositional();
+        this.tokenizer = new Tokenizer();
+        this.tokenPositions = new long[positional ? 64 : 0];
+
+        clear(0);
+        this.segment = opened;
+        this.wordIDs = opened.readTerms(tableSize);
+        this.freeIds = Arrays.copyOf(savedFreeIds, Math.max(savedFreeIds.length, 8));
+        this.numFreeIds = savedFreeIds.length;
+        this.invertedIndex = new ArrayList<>(Arrays.asList(new PostingList[wordIDs.size()]));
+        this.fieldLengths = null;
+
+        for (int field = 0; field < NUM_FIELDS; field++) {
+            totalFieldLengths[field] = opened.getTotalFieldLength(field);
+        }
+
+        boolean[] free = new boolean[opened.getNumSongs()];
+        for (int id : savedFreeIds) {
+            free[id] = true;
         }
+
+        int next = 0;
+        for (int id = 0; id < free.length; id++) {
+            Song song = free[id] ? null : allSongs.get(next++);
+
+            if (song != null) {
+                song.setId(id);
+            }
+
+            songs.add(song);
+            songTerms.add(null);
+        }
+    }
+
+    /**
+     * Writes the index to a segment file that the segment constructor can open
+     * @param segmentFile the file to write, replacing any existing file
+     * @param sourceChecksum the checksum of the data the index was built from, such as IndexSegment.checksum() of the song file
+     * @throws IOException when writing fails
+     */
+    public void save(Path segmentFile, long sourceChecksum) throws IOException {
+        materialize();
+
+        IndexSegment.write(segmentFile, sourceChecksum, positional, wordIDs, invertedIndex,
+                freeIds, numFreeIds, songTerms, fieldLengths, totalFieldLengths);
+    }
+
+    /**
+     * Reads every part of an index segment into memory so the index can be changed.
+     * Does nothing when the index is not served from a segment.
+     */
+    private void materialize() {
+        if (segment == null) {
+            return;
+        }
+
+        for (int slot = 0; slot < invertedIndex.size(); slot++) {
+            postingList(slot);
+        }
+
+        fieldLengths = new int[NUM_FIELDS][Math.max(songs.size(), 16)];
+
+        for (int id = 0; id < songs.size(); id++) {
+            songTerms.set(id, segment.readSongTerms(id));
+
+            for (int field = 0; field < NUM_FIELDS; field++) {
+                fieldLengths[field][id] = segment.getFieldLength(field, id);
+            }
+        }
+
+        if (wordIDs.size() > termMarks.length) {
+            termMarks = new int[wordIDs.size()];
+            termCounts = new int[wordIDs.size()];
+        }
+
+        segment = null;
+    }
+
+    /**
+     * Returns the posting list of a word, reading it from the segment the first time
+     * @param slot the word's term ID
+     * @return the posting list
+     */
+    private PostingList postingList(int slot) {
+        PostingList list = invertedIndex.get(slot);
+
+        if (list == null) {
+            list = segment.readPostings(slot);
+            invertedIndex.set(slot, list);
+        }
+
+        return list;
     }
 
     /**
@@ -39,8 +233,7 @@ public class SearchEngine {
      * @param allSongs the list of all songs to index
      */
     public void rebuild(ArrayList<Song> allSongs) {
-        this.wordIDs = new HashTable<>(tableSize);
-        this.invertedIndex = new ArrayList<>(tableSize);
+        clear(allSongs.size());
 
         for (Song song : allSongs) {
             indexSong(song);
@@ -48,104 +241,1144 @@ public class SearchEngine {
     }
 
     /**
-     * Indexes a song by tokenizing its lyrics, name, album, and release year
-     * @param song the song to index
+     * Rebuilds the search engine's index with a new list of songs on a ForkJoinPool.
+     * The songs are split into contiguous shards, each shard is indexed in parallel
+     * into a partial index with its own term dictionary and posting lists, and the
+     * partial indexes are appended to this one in shard order. Words and songs get
+     * the same IDs as with rebuild(allSongs), so the resulting index is identical.
+     * @param allSongs the list of all songs to index, none of them repeated
+     * @param pool the pool to index the shards on
      */
-    public void indexSong(Song song) {
-        ArrayList<String> tokens = tokenize(song.getLyrics());
-        tokens.addAll(tokenize(song.getName()));
-        tokens.addAll(tokenize(song.getAlbum()));
-        tokens.add(song.getReleaseYear() + "");
+    public void rebuild(ArrayList<Song> allSongs, ForkJoinPool pool) {
+        int shardSize = Math.max(MIN_SHARD_SIZE, allSongs.size() / (4 * pool.getParallelism()) + 1);
+        ArrayList<SearchEngine> shards = pool.invoke(new ShardTask(allSongs, 0, allSongs.size(), shardSize));
 
-        HashTable<String> seenWords = new HashTable<>(tokens.size());
+        clear(allSongs.size());
 
-        for (String word : tokens) {
-            WordID wordID = new WordID(word);
+        for (SearchEngine shard : shards) {
+            append(shard);
+        }
+    }
+
+    /**
+     * Empties the index
+     * @param expectedSongs the number of songs to make room for
+     */
+    private void clear(int expectedSongs) {
+        this.wordIDs = new TermDictionary(tableSize);
+        this.invertedIndex = new ArrayList<>(tableSize);
+        this.songs = new ArrayList<>(expectedSongs);
+        this.songTerms = new ArrayList<>(expectedSongs);
+        this.freeIds = new int[8];
+        this.numFreeIds = 0;
+        this.termMarks = new int[tableSize];
+        this.termCounts = new int[tableSize];
+        this.currentMark = 0;
+        this.fieldLengths = new int[NUM_FIELDS][Math.max(expectedSongs, 16)];
+        this.totalFieldLengths = new long[NUM_FIELDS];
+        this.frequencyCompletions = null;
+        this.playCompletions = null;
+        this.segment = null;
+    }
 
-            if (seenWords.contains(word)) {
-                continue;
+    /**
+     * Indexes a range of songs into partial indexes, splitting the range until it is
+     * no larger than a shard
+     */
+    private class ShardTask extends RecursiveTask<ArrayList<SearchEngine>> {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<Song> allSongs;
+        private final int from;
+        private final int to;
+        private final int shardSize;
+
+        public ShardTask(ArrayList<Song> allSongs, int from, int to, int shardSize) {
+            this.allSongs = allSongs;
+            this.from = from;
+            this.to = to;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        protected ArrayList<SearchEngine> compute() {
+            if (to - from <= shardSize) {
+                ArrayList<SearchEngine> shard = new ArrayList<>(1);
+                shard.add(new SearchEngine(new ArrayList<>(allSongs.subList(from, to)), tableSize, positional));
+                return shard;
             }
 
-            if (!wordIDs.contains(wordID)) {
-                int newID = invertedIndex.size();
-                WordID mapping = new WordID(word, newID);
-                wordIDs.add(mapping);
-                invertedIndex.add(new BST<>());
+            int middle = (from + to) >>> 1;
+            ShardTask left = new ShardTask(allSongs, from, middle, shardSize);
+            left.fork();
+
+            ArrayList<SearchEngine> right = new ShardTask(allSongs, middle, to, shardSize).compute();
+            ArrayList<SearchEngine> shards = left.join();
+
+            shards.addAll(right);
+            return shards;
+        }
+    }
+
+    /**
+     * Appends a partial index built over the songs that follow this index's songs.
+     * The shard's words are added in the order the shard first saw them and its
+     * posting lists are appended with their IDs shifted past this index's songs.
+     * @param shard the partial index, which is no longer usable afterwards
+     */
+    private void append(SearchEngine shard) {
+        int offset = songs.size();
+        int[] globalSlots = new int[shard.wordIDs.size()];
+
+        for (int local = 0; local < globalSlots.length; local++) {
+            int slot = wordIDs.add(shard.wordIDs.getTerm(local));
+
+            if (slot == invertedIndex.size()) {
+                invertedIndex.add(new PostingList(positional));
+            }
+
+            invertedIndex.get(slot).appendAll(shard.invertedIndex.get(local), offset);
+            globalSlots[local] = slot;
+        }
+
+        ensureSongCapacity(offset + shard.songs.size());
+
+        for (int local = 0; local < shard.songs.size(); local++) {
+            int id = offset + local;
+            Song song = shard.songs.get(local);
+            int[] slots = shard.songTerms.get(local);
+
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = globalSlots[slots[i]];
             }
 
-            WordID stored = wordIDs.get(wordID);
-            int slot = stored.getId();
+            song.setId(id);
+            songs.add(song);
+            songTerms.add(slots);
 
-            invertedIndex.get(slot).insert(song, new TitleComparator());
-            seenWords.add(word);
+            for (int field = 0; field < NUM_FIELDS; field++) {
+                fieldLengths[field][id] = shard.fieldLengths[field][local];
+            }
+        }
+
+        for (int field = 0; field < NUM_FIELDS; field++) {
+            totalFieldLengths[field] += shard.totalFieldLengths[field];
+        }
+
+        if (wordIDs.size() > termMarks.length) {
+            termMarks = Arrays.copyOf(termMarks, wordIDs.size());
+            termCounts = Arrays.copyOf(termCounts, wordIDs.size());
         }
     }
 
     /**
-     * Tokenizes the input text by converting it to lowercase, removing non-alphanumeric characters,
-     * and splitting it into words. It also filters out stop words and duplicates
-     * @param text the text to tokenize
-     * @return an ArrayList of unique, non-stop words from the text
+     * Determines whether another SearchEngine has exactly the same index, down to
+     * word IDs, song IDs, and the bytes of every posting list. An index served from
+     * a segment is read into memory first.
+     * @param other the other SearchEngine
+     * @return whether the indexes are identical
      */
-    private ArrayList<String> tokenize(String text) {
-        text = text.toLowerCase().replaceAll("[^a-z0-9\\s]", " ");
-        String[] words = text.split("\\s+");
-        HashTable<String> seenWords = new HashTable<>(words.length);
-        ArrayList<String> uniqueWords = new ArrayList<>(words.length);
+    public boolean hasSameIndexAs(SearchEngine other) {
+        materialize();
+        other.materialize();
+
+        if (wordIDs.size() != other.wordIDs.size() || songs.size() != other.songs.size()
+                || numFreeIds != other.numFreeIds || positional != other.positional
+                || !Arrays.equals(totalFieldLengths, other.totalFieldLengths)) {
+            return false;
+        }
 
-        for (String word : words) {
-            if (word.isEmpty() || stopWordsContains(word)) {
-                continue;
+        for (int slot = 0; slot < wordIDs.size(); slot++) {
+            if (!wordIDs.getTerm(slot).equals(other.wordIDs.getTerm(slot))
+                    || !invertedIndex.get(slot).equals(other.invertedIndex.get(slot))) {
+                return false;
+            }
+        }
+
+        for (int id = 0; id < songs.size(); id++) {
+            if (songs.get(id) != other.songs.get(id) || !Arrays.equals(songTerms.get(id), other.songTerms.get(id))) {
+                return false;
             }
 
-            if (!seenWords.contains(word)) {
-                seenWords.add(word);
-                uniqueWords.add(word);
+            for (int field = 0; field < NUM_FIELDS; field++) {
+                if (songs.get(id) != null && fieldLengths[field][id] != other.fieldLengths[field][id]) {
+                    return false;
+                }
             }
         }
 
-        return uniqueWords;
+        return true;
     }
 
     /**
-     * Checks if the given word is a stop word using binary search
+     * Returns the song with the given ID
+     * @param id the song ID
+     * @return the song, or null if no song has that ID
+     */
+    public Song getSong(int id) {
+        if (id < 0 || id >= songs.size()) {
+            return null;
+        }
+
+        return songs.get(id);
+    }
+
+    /**
+     * Determines whether the index stores word positions
+     * @return whether phrase queries are supported
+     */
+    public boolean isPositional() {
+        return positional;
+    }
+
+    /**
+     * Determines whether a song is in the index
+     * @param song the song to look for
+     * @return whether the song is indexed
+     */
+    public boolean isIndexed(Song song) {
+        return getSong(song.getId()) == song;
+    }
+
+    /**
+     * Indexes a song by tokenizing its lyrics, name, album, and release year,
+     * and gives the song an ID. Only the posting lists of the song's own words are touched.
+     * @param song the song to index
+     * @throws IllegalArgumentException when the song is already indexed
+     */
+    public void indexSong(Song song) throws IllegalArgumentException {
+        if (isIndexed(song)) {
+            throw new IllegalArgumentException("indexSong(): song is already indexed");
+        }
+
+        materialize();
+
+        int id;
+
+        if (numFreeIds > 0) {
+            id = freeIds[--numFreeIds];
+            songs.set(id, song);
+            songTerms.set(id, null);
+        } else {
+            id = songs.size();
+            songs.add(song);
+            songTerms.add(null);
+        }
+
+        song.setId(id);
+        addPostings(song);
+    }
+
+    /**
+     * Tells the index that songs' play counts have changed. Plays are not indexed, so
+     * nothing is rebuilt; only play-weighted completions are recomputed when next used.
+     */
+    public void playsChanged() {
+        playCompletions = null;
+    }
+
+    /**
+     * Removes a song from the index and frees its ID. Only the posting lists of the
+     * words the song was indexed under are touched, so the song may already have been modified.
+     * @param song the song to remove
+     * @return whether the song was indexed and has been removed
+     */
+    public boolean removeSong(Song song) {
+        if (!isIndexed(song)) {
+            return false;
+        }
+
+        materialize();
+
+        int id = song.getId();
+        removePostings(id);
+
+        songs.set(id, null);
+        song.setId(-1);
+
+        if (numFreeIds == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, numFreeIds * 2);
+        }
+
+        freeIds[numFreeIds++] = id;
+        return true;
+    }
+
+    /**
+     * Updates the index after a song has been modified. The song keeps its ID.
+     * @param song the modified song
+     * @throws IllegalArgumentException when the song is not indexed
+     */
+    public void reindexSong(Song song) throws IllegalArgumentException {
+        if (!isIndexed(song)) {
+            throw new IllegalArgumentException("reindexSong(): song is not indexed");
+        }
+
+        materialize();
+
+        removePostings(song.getId());
+        addPostings(song);
+    }
+
+    /**
+     * Adds a song's ID and term frequency to the posting list of every word in the song,
+     * and records which words those were and how many words each field has.
+     * In a positional index each field's positions start FIELD_POSITION_GAP past the previous field's.
+     * @param song the song, which already has an ID
+     */
+    private void addPostings(Song song) {
+        frequencyCompletions = null;
+        playCompletions = null;
+
+        int id = song.getId();
+        int[] slots = new int[16];
+        int numSlots = 0;
+        int numTokens = 0;
+        int fieldStart = 0;
+        currentMark++;
+
+        ensureSongCapacity(id + 1);
+
+        CharSequence[] fields = {song.getLyrics(), song.getName(), song.getAlbum(), Integer.toString(song.getReleaseYear())};
+
+        for (int field = 0; field < NUM_FIELDS; field++) {
+            int fieldLength = 0;
+            tokenizer.reset(fields[field]);
+
+            while (tokenizer.next()) {
+                char[] chars = tokenizer.getChars();
+                int length = tokenizer.getLength();
+
+                if (stopWordIDs.find(chars, 0, length) != -1) {
+                    continue;
+                }
+
+                int slot = wordIDs.add(chars, 0, length);
+                fieldLength++;
+
+                if (slot == invertedIndex.size()) {
+                    invertedIndex.add(new PostingList(positional));
+                }
+
+                if (positional) {
+                    if (numTokens == tokenPositions.length) {
+                        tokenPositions = Arrays.copyOf(tokenPositions, numTokens * 2);
+                    }
+
+                    tokenPositions[numTokens++] = (long) slot << 32 | (fieldStart + tokenizer.getPosition());
+                }
+
+                if (slot >= termMarks.length) {
+                    termMarks = Arrays.copyOf(termMarks, Math.max(termMarks.length * 2, slot + 1));
+                    termCounts = Arrays.copyOf(termCounts, termMarks.length);
+                }
+
+                if (termMarks[slot] == currentMark) {
+                    termCounts[slot]++;
+                    continue;
+                }
+
+                termMarks[slot] = currentMark;
+                termCounts[slot] = 1;
+
+                if (numSlots == slots.length) {
+                    slots = Arrays.copyOf(slots, numSlots * 2);
+                }
+
+                slots[numSlots++] = slot;
+            }
+
+            fieldLengths[field][id] = fieldLength;
+            totalFieldLengths[field] += fieldLength;
+            fieldStart += tokenizer.getPosition() + 1 + FIELD_POSITION_GAP;
+        }
+
+        if (positional) {
+            addPositionalPostings(id, numTokens);
+        } else {
+            for (int i = 0; i < numSlots; i++) {
+                invertedIndex.get(slots[i]).add(id, termCounts[slots[i]]);
+            }
+        }
+
+        songTerms.set(id, Arrays.copyOf(slots, numSlots));
+    }
+
+    /**
+     * Adds a song's ID and positions to the posting list of every word in the song
+     * @param id the song's ID
+     * @param numTokens the number of packed word and position pairs in tokenPositions
+     */
+    private void addPositionalPostings(int id, int numTokens) {
+        // Sorting the pairs groups each word's positions together in ascending order
+        Arrays.sort(tokenPositions, 0, numTokens);
+
+        int[] positions = new int[16];
+
+        for (int start = 0; start < numTokens; ) {
+            int slot = (int) (tokenPositions[start] >>> 32);
+            int frequency = 0;
+
+            while (start + frequency < numTokens && (int) (tokenPositions[start + frequency] >>> 32) == slot) {
+                if (frequency == positions.length) {
+                    positions = Arrays.copyOf(positions, frequency * 2);
+                }
+
+                positions[frequency] = (int) tokenPositions[start + frequency];
+                frequency++;
+            }
+
+            invertedIndex.get(slot).add(id, positions, frequency);
+            start += frequency;
+        }
+    }
+
+    /**
+     * Grows the per-song arrays to hold at least the given number of songs
+     * @param numSongs the number of songs needed
+     */
+    private void ensureSongCapacity(int numSongs) {
+        if (numSongs > fieldLengths[0].length) {
+            for (int field = 0; field < NUM_FIELDS; field++) {
+                fieldLengths[field] = Arrays.copyOf(fieldLengths[field], Math.max(fieldLengths[field].length * 2, numSongs));
+            }
+        }
+    }
+
+    /**
+     * Removes a song's ID from the posting lists of the words it was indexed under
+     * @param id the song's ID
+     */
+    private void removePostings(int id) {
+        frequencyCompletions = null;
+        playCompletions = null;
+
+        for (int slot : songTerms.get(id)) {
+            invertedIndex.get(slot).remove(id);
+        }
+
+        for (int field = 0; field < NUM_FIELDS; field++) {
+            totalFieldLengths[field] -= fieldLengths[field][id];
+            fieldLengths[field][id] = 0;
+        }
+
+        songTerms.set(id, null);
+    }
+
+    /**
+     * Checks if the given word is a stop word
      * @param word the word to check
      * @return true if the word is a stop word, false otherwise
      */
     public static boolean stopWordsContains(String word) {
-        int left = 0;
-        int right = stopWords.size() - 1;
+        return stopWordIDs.find(word) != -1;
+    }
 
-        while (left <= right) {
-            int mid = left + (right - left) / 2;
-            int cmp = stopWords.get(mid).compareTo(word);
+    /**
+     * Suggests indexed words that start with a prefix. The suggestions are ranked by the
+     * number of songs containing each word, or by the total plays of those songs.
+     * The prefix structure is rebuilt on the first call after the index changes.
+     * @param prefix the start of the word; case is ignored
+     * @param numResults the maximum number of words to return
+     * @param byPlays whether to rank by total plays rather than by number of songs
+     * @return the suggested words, best first
+     */
+    public ArrayList<String> complete(String prefix, int numResults, boolean byPlays) {
+        return completions(byPlays).complete(prefix.trim().toLowerCase(), numResults);
+    }
 
-            if (cmp == 0) {
-                return true;
-            } else if (cmp < 0) {
-                left = mid + 1;
-            } else {
-                right = mid - 1;
+    /**
+     * Returns the sorted term structure, building it if the index has changed since it was last built
+     * @param byPlays whether terms are weighted by total plays rather than by number of songs
+     * @return the PrefixIndex over every indexed word
+     */
+    private PrefixIndex completions(boolean byPlays) {
+        if (byPlays && playCompletions == null) {
+            long[] weights = new long[wordIDs.size()];
+
+            for (int id = 0; id < songs.size(); id++) {
+                if (songs.get(id) != null) {
+                    for (int slot : segment != null ? segment.readSongTerms(id) : songTerms.get(id)) {
+                        weights[slot] += songs.get(id).getPlays();
+                    }
+                }
             }
+
+            playCompletions = new PrefixIndex(wordIDs, weights);
+        } else if (!byPlays && frequencyCompletions == null) {
+            long[] weights = new long[wordIDs.size()];
+
+            for (int slot = 0; slot < weights.length; slot++) {
+                weights[slot] = segment != null ? segment.getDocumentFrequency(slot) : invertedIndex.get(slot).size();
+            }
+
+            frequencyCompletions = new PrefixIndex(wordIDs, weights);
         }
 
-        return false;
+        return byPlays ? playCompletions : frequencyCompletions;
     }
 
     /**
-     * Searches for songs that match the given keyword.
-     * @param keyword the keyword to search for
-     * @return a BST containing all songs that match the keyword, or an empty BST if no matches are found
+     * Searches for songs that match the given query. Words must all appear in a song,
+     * OR separates alternatives, NOT or a leading '-' excludes a word, and quotes
+     * match a phrase; see Query for the full syntax.
+     * @param keyword the query to search for
+     * @return a BST containing all songs that match the query, or an empty BST if no matches are found
+     * @throws IllegalStateException when the query has a phrase and the index is not positional
      */
-    public BST<Song> search(String keyword) {
-        String cleanedKeyword = keyword.toLowerCase().replaceAll("[^a-z0-9]", "");
-        WordID wordID = new WordID(cleanedKeyword);
+    public BST<Song> search(String keyword) throws IllegalStateException {
+        return toTitleOrder(searchIds(Query.parse(keyword)));
+    }
 
-        if (!wordIDs.contains(wordID)) {
-            return new BST<>();
+    /**
+     * Searches for songs that match the given query, also accepting words spelled
+     * slightly differently from the required keywords. Words of up to two letters must
+     * match exactly, words of up to five letters may differ by one edit, and longer
+     * words by two, all capped at maxDistance. Excluded words and phrases match exactly.
+     * @param keyword the query to search for
+     * @param maxDistance the largest number of single-letter insertions, deletions, or substitutions, from 0 to 2
+     * @return a BST containing all songs that match the query, or an empty BST if no matches are found
+     * @throws IllegalArgumentException when maxDistance is not between 0 and 2
+     * @throws IllegalStateException when the query has a phrase and the index is not positional
+     */
+    public BST<Song> searchFuzzy(String keyword, int maxDistance) throws IllegalArgumentException, IllegalStateException {
+        return toTitleOrder(searchIds(Query.parse(keyword), maxDistance));
+    }
+
+    /**
+     * Finds the IDs of the songs matching a query
+     * @param query the parsed query
+     * @return the matching song IDs in ascending order
+     * @throws IllegalStateException when the query has a phrase and the index is not positional
+     */
+    public int[] searchIds(Query query) throws IllegalStateException {
+        return searchIds(query, 0);
+    }
+
+    /**
+     * Finds the IDs of the songs matching a query, allowing misspelled required words
+     * @param query the parsed query
+     * @param maxDistance the largest edit distance for a required word, from 0 to 2; see searchFuzzy
+     * @return the matching song IDs in ascending order
+     * @throws IllegalArgumentException when maxDistance is not between 0 and 2
+     * @throws IllegalStateException when the query has a phrase and the index is not positional
+     */
+    public int[] searchIds(Query query, int maxDistance) throws IllegalArgumentException, IllegalStateException {
+        if (maxDistance < 0 || maxDistance > 2) {
+            throw new IllegalArgumentException("searchIds(): edit distance must be between 0 and 2");
+        }
+
+        QueryMatcher matcher = new QueryMatcher(query, maxDistance);
+        int[] matches = new int[16];
+        int numMatches = 0;
+
+        for (int id = matcher.next(); id != PostingList.Cursor.END; id = matcher.next()) {
+            if (numMatches == matches.length) {
+                matches = Arrays.copyOf(matches, numMatches * 2);
+            }
+
+            matches[numMatches++] = id;
+        }
+
+        return Arrays.copyOf(matches, numMatches);
+    }
+
+    /**
+     * Produces the IDs of the songs matching a query in ascending order, one at a time,
+     * by merging the matches of its clauses
+     */
+    private class QueryMatcher {
+        private final ArrayList<ClauseMatcher> clauses;
+        private final int[] currents;
+        private int last;
+
+        public QueryMatcher(Query query, int maxDistance) {
+            clauses = new ArrayList<>();
+
+            for (Query.Clause clause : query.getClauses()) {
+                clauses.add(new ClauseMatcher(clause, maxDistance));
+            }
+
+            currents = new int[clauses.size()];
+            for (int i = 0; i < currents.length; i++) {
+                currents[i] = clauses.get(i).next();
+            }
+
+            last = -1;
+        }
+
+        /**
+         * Advances to the next matching song
+         * @return the next matching ID, or PostingList.Cursor.END when there are no more
+         */
+        public int next() {
+            int id = PostingList.Cursor.END;
+
+            for (int i = 0; i < currents.length; i++) {
+                if (currents[i] == last && last != -1) {
+                    currents[i] = clauses.get(i).next();
+                }
+
+                if (currents[i] != PostingList.Cursor.END && (id == PostingList.Cursor.END || currents[i] < id)) {
+                    id = currents[i];
+                }
+            }
+
+            last = id;
+            return id;
+        }
+    }
+
+    /**
+     * Produces the IDs of the songs matching one clause of a query in ascending order,
+     * one at a time. The rarest required word drives the intersection and the other
+     * lists are advanced to each candidate with their skip entries, so the cost
+     * follows the shortest list. The words of a required phrase are required too,
+     * so positions are only checked for songs containing all of them.
+     */
+    private class ClauseMatcher {
+        private final PostingList.Cursor[] cursors;
+        private final ArrayList<PostingList.Cursor> excluded;
+        private final ArrayList<PhraseMatcher> phrases;
+        private final ArrayList<PhraseMatcher> excludedPhrases;
+        private int candidate;
+        private boolean exhausted;
+
+        public ClauseMatcher(Query.Clause clause, int maxDistance) throws IllegalStateException {
+            if (!positional && (!clause.getPhrases().isEmpty() || !clause.getExcludedPhrases().isEmpty())) {
+                throw new IllegalStateException("Phrase queries need an index built with positions");
+            }
+
+            ArrayList<PostingList> required = new ArrayList<>();
+            excluded = new ArrayList<>();
+            phrases = new ArrayList<>();
+            excludedPhrases = new ArrayList<>();
+            candidate = -1;
+            exhausted = clause.isEmpty();
+
+            for (String word : clause.getRequired()) {
+                required.add(postings(word, maxDistance));
+            }
+
+            for (Query.Phrase phrase : clause.getPhrases()) {
+                for (String word : phrase.getWords()) {
+                    required.add(postings(word, 0));
+                }
+
+                phrases.add(new PhraseMatcher(phrase));
+            }
+
+            for (Query.Phrase phrase : clause.getExcludedPhrases()) {
+                PhraseMatcher matcher = new PhraseMatcher(phrase);
+
+                if (matcher.isPossible()) {
+                    excludedPhrases.add(matcher);
+                }
+            }
+
+            for (PostingList list : required) {
+                if (list == null || list.isEmpty()) {
+                    exhausted = true;
+                }
+            }
+
+            if (exhausted) {
+                required.clear();
+            }
+
+            required.sort((list1, list2) -> Integer.compare(list1.size(), list2.size()));
+
+            cursors = new PostingList.Cursor[required.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = new PostingList.Cursor(required.get(i));
+            }
+
+            for (String word : clause.getExcluded()) {
+                int slot = wordIDs.find(word);
+
+                if (slot != -1) {
+                    excluded.add(new PostingList.Cursor(postingList(slot)));
+                }
+            }
+        }
+
+        /**
+         * Advances to the next matching song
+         * @return the next matching ID, or PostingList.Cursor.END when there are no more
+         */
+        public int next() {
+            if (exhausted) {
+                return PostingList.Cursor.END;
+            }
+
+            candidate = cursors.length > 0 ? cursors[0].next() : nextSongId(candidate + 1);
+
+            while (candidate != PostingList.Cursor.END) {
+                int next = candidate;
+
+                for (int i = 1; i < cursors.length && next == candidate; i++) {
+                    next = cursors[i].advance(candidate);
+                }
+
+                if (next == PostingList.Cursor.END) {
+                    break;
+                }
+
+                if (next != candidate) {
+                    // Some list has nothing at the candidate; jump the driver to where that list continues
+                    candidate = cursors[0].advance(next);
+                    continue;
+                }
+
+                if (!isExcluded(candidate) && containsPhrases(candidate)) {
+                    return candidate;
+                }
+
+                candidate = cursors.length > 0 ? cursors[0].next() : nextSongId(candidate + 1);
+            }
+
+            exhausted = true;
+            return PostingList.Cursor.END;
+        }
+
+        /**
+         * Determines whether a candidate contains an excluded word
+         * @param id the candidate's ID
+         * @return whether the candidate is excluded
+         */
+        private boolean isExcluded(int id) {
+            for (PostingList.Cursor cursor : excluded) {
+                if (cursor.advance(id) == id) {
+                    return true;
+                }
+            }
+
+            for (PhraseMatcher phrase : excludedPhrases) {
+                if (phrase.matches(id)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Determines whether a candidate contains every required phrase
+         * @param id the candidate's ID
+         * @return whether all phrases match
+         */
+        private boolean containsPhrases(int id) {
+            for (PhraseMatcher phrase : phrases) {
+                if (!phrase.matches(id)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Returns the posting list of a word, or the merged posting lists of every indexed
+     * word within an edit distance of it. Short words are allowed fewer edits, as a
+     * two-letter word is within two edits of every other short word.
+     * @param word the word
+     * @param maxDistance the largest edit distance to allow
+     * @return the song IDs containing the word or a similar word, or null if there are none
+     */
+    private PostingList postings(String word, int maxDistance) {
+        int allowed = Math.min(maxDistance, word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2);
+
+        if (allowed == 0) {
+            int slot = wordIDs.find(word);
+            return slot == -1 ? null : postingList(slot);
+        }
+
+        ArrayList<PostingList.Cursor> similar = new ArrayList<>();
+        PostingList last = null;
+
+        for (int slot : completions(false).findWithin(word, allowed)) {
+            if (!postingList(slot).isEmpty()) {
+                last = postingList(slot);
+                similar.add(new PostingList.Cursor(last));
+                similar.get(similar.size() - 1).next();
+            }
+        }
+
+        return similar.size() <= 1 ? last : mergePostings(similar);
+    }
+
+    /**
+     * Merges posting lists into one, adding up the frequencies of songs in several lists
+     * @param cursors cursors on the first ID of each list
+     * @return the merged list
+     */
+    private static PostingList mergePostings(ArrayList<PostingList.Cursor> cursors) {
+        PostingList merged = new PostingList();
+
+        while (true) {
+            int id = PostingList.Cursor.END;
+
+            for (PostingList.Cursor cursor : cursors) {
+                int current = cursor.current();
+
+                if (current != PostingList.Cursor.END && (id == PostingList.Cursor.END || current < id)) {
+                    id = current;
+                }
+            }
+
+            if (id == PostingList.Cursor.END) {
+                return merged;
+            }
+
+            int frequency = 0;
+
+            for (PostingList.Cursor cursor : cursors) {
+                if (cursor.current() == id) {
+                    frequency += cursor.frequency();
+                    cursor.next();
+                }
+            }
+
+            merged.add(id, frequency);
+        }
+    }
+
+    /**
+     * Checks a phrase against the positions stored for songs' words. Songs must be
+     * checked in ascending ID order, as the cursors only move forward.
+     */
+    private class PhraseMatcher {
+        private final Query.Phrase phrase;
+        private final PostingList.Cursor[] cursors;
+        private final int[][] positions;
+        private final int[] indexes;
+        private final int[] copies;
+
+        public PhraseMatcher(Query.Phrase phrase) {
+            int numWords = phrase.getWords().size();
+
+            this.phrase = phrase;
+            this.cursors = new PostingList.Cursor[numWords];
+            this.positions = new int[numWords][];
+            this.indexes = new int[numWords];
+            this.copies = new int[numWords];
+
+            for (int i = 0; i < numWords; i++) {
+                int slot = wordIDs.find(phrase.getWords().get(i));
+
+                if (slot != -1) {
+                    cursors[i] = new PostingList.Cursor(postingList(slot));
+                }
+
+                // A repeated word is counted at its first occurrence in the phrase
+                int first = phrase.getWords().indexOf(phrase.getWords().get(i));
+                copies[first]++;
+            }
+        }
+
+        /**
+         * Determines whether every word of the phrase is in the index
+         * @return whether any song could match
+         */
+        public boolean isPossible() {
+            for (PostingList.Cursor cursor : cursors) {
+                if (cursor == null) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Determines whether a song contains the phrase
+         * @param id the song's ID, at or above any ID checked before
+         * @return whether the phrase matches
+         */
+        public boolean matches(int id) {
+            for (int i = 0; i < cursors.length; i++) {
+                if (cursors[i] == null || cursors[i].advance(id) != id) {
+                    return false;
+                }
+
+                positions[i] = cursors[i].positions();
+                indexes[i] = 0;
+            }
+
+            return phrase.getSlop() == 0 ? matchesExactly() : matchesWithin(phrase.getSpan() + phrase.getSlop());
+        }
+
+        /**
+         * Determines whether the words occur at exactly their offsets from some starting position
+         * @return whether the phrase occurs
+         */
+        private boolean matchesExactly() {
+            for (int i = 0; i < cursors[0].frequency(); i++) {
+                int start = positions[0][i] - phrase.getOffset(0);
+                boolean found = true;
+
+                for (int word = 1; word < cursors.length && found; word++) {
+                    int target = start + phrase.getOffset(word);
+
+                    while (indexes[word] < cursors[word].frequency() && positions[word][indexes[word]] < target) {
+                        indexes[word]++;
+                    }
+
+                    found = indexes[word] < cursors[word].frequency() && positions[word][indexes[word]] == target;
+                }
+
+                if (found) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Determines whether some window of positions contains every word, by repeatedly
+         * moving past the earliest position of the current window. A word the phrase
+         * repeats needs that many different positions, so the window takes the next
+         * copies of it in a row from each word's current position.
+         * @param width the largest allowed distance from the first word to the last
+         * @return whether such a window exists
+         */
+        private boolean matchesWithin(int width) {
+            while (true) {
+                int earliest = -1;
+                int latest = Integer.MIN_VALUE;
+
+                for (int word = 0; word < cursors.length; word++) {
+                    if (copies[word] == 0) {
+                        continue;
+                    }
+
+                    int last = indexes[word] + copies[word] - 1;
+
+                    if (last >= cursors[word].frequency()) {
+                        return false;
+                    }
+
+                    if (earliest == -1 || positions[word][indexes[word]] < positions[earliest][indexes[earliest]]) {
+                        earliest = word;
+                    }
+
+                    latest = Math.max(latest, positions[word][last]);
+                }
+
+                if (latest - positions[earliest][indexes[earliest]] <= width) {
+                    return true;
+                }
+
+                indexes[earliest]++;
+            }
+        }
+    }
+
+    /**
+     * Finds the most-played songs matching a query. Matches are streamed through a heap
+     * of the best results, so memory depends only on the number of results requested.
+     * Every match is still visited, since play counts are not stored with the postings
+     * and give no bound to stop early on, so the time grows with the number of matches.
+     * @param keyword the query to search for; see Query for the syntax
+     * @param numResults the maximum number of songs to return
+     * @return the most-played matching songs, most-played first
+     * @throws IllegalStateException when the query has a phrase and the index is not positional
+     */
+    public ArrayList<Song> searchMostPlayed(String keyword, int numResults) throws IllegalStateException {
+        return searchTop(keyword, numResults, Song::getPlays);
+    }
+
+    /**
+     * Finds the most recently released songs matching a query. Matches are streamed through
+     * a heap of the best results, so memory depends only on the number of results requested.
+     * Like searchMostPlayed, it visits every match.
+     * @param keyword the query to search for; see Query for the syntax
+     * @param numResults the maximum number of songs to return
+     * @return the most recent matching songs, newest first
+     * @throws IllegalStateException when the query has a phrase and the index is not positional
+     */
+    public ArrayList<Song> searchMostRecent(String keyword, int numResults) throws IllegalStateException {
+        return searchTop(keyword, numResults, Song::getReleaseYear);
+    }
+
+    /**
+     * Finds the matching songs with the highest value of some property, offering
+     * every match to the heap. Ties go to the song with the smaller ID.
+     * @param keyword the query to search for
+     * @param numResults the maximum number of songs to return
+     * @param property the property to rank by
+     * @return the matching songs with the highest values, highest first
+     */
+    private ArrayList<Song> searchTop(String keyword, int numResults, ToDoubleFunction<Song> property) {
+        QueryMatcher matcher = new QueryMatcher(Query.parse(keyword), 0);
+        TopKHeap best = new TopKHeap(Math.min(numResults, songs.size() - numFreeIds));
+
+        for (int id = matcher.next(); id != PostingList.Cursor.END; id = matcher.next()) {
+            best.offer(id, property.applyAsDouble(songs.get(id)));
+        }
+
+        return toSongs(best.toSortedIds());
+    }
+
+    /**
+     * Finds the songs that best match some keywords, ranked by BM25. Every keyword
+     * contributes to the score of the songs containing it, rarer words counting more
+     * and repeated words counting with diminishing returns, relative to how long
+     * the song is. Words excluded with NOT or '-' remove songs from the results,
+     * and the words of a quoted phrase are scored as separate words.
+     * The keyword lists are merged one song at a time into a heap of the best
+     * results, so only the requested number of songs are ever held.
+     * @param keywords the keywords to search for
+     * @param numResults the maximum number of songs to return
+     * @return the best matching songs, best first
+     */
+    public ArrayList<Song> searchRanked(String keywords, int numResults) {
+        ArrayList<PostingList.Cursor> scored = new ArrayList<>();
+        ArrayList<PostingList.Cursor> excluded = new ArrayList<>();
+        ArrayList<Double> weights = new ArrayList<>();
+        int numSongs = songs.size() - numFreeIds;
+
+        for (Query.Clause clause : Query.parse(keywords).getClauses()) {
+            ArrayList<String> words = new ArrayList<>(clause.getRequired());
+
+            for (Query.Phrase phrase : clause.getPhrases()) {
+                words.addAll(phrase.getWords());
+            }
+
+            for (String word : words) {
+                int slot = wordIDs.find(word);
+
+                if (slot != -1 && !postingList(slot).isEmpty()) {
+                    int documentFrequency = postingList(slot).size();
+                    scored.add(new PostingList.Cursor(postingList(slot)));
+                    weights.add(Math.log(1 + (numSongs - documentFrequency + 0.5) / (documentFrequency + 0.5)));
+                }
+            }
+
+            for (String word : clause.getExcluded()) {
+                int slot = wordIDs.find(word);
+
+                if (slot != -1) {
+                    excluded.add(new PostingList.Cursor(postingList(slot)));
+                }
+            }
+        }
+
+        TopKHeap best = new TopKHeap(Math.min(numResults, numSongs));
+        double averageLength = 0;
+
+        for (long total : totalFieldLengths) {
+            averageLength += (double) total / Math.max(numSongs, 1);
+        }
+
+        for (PostingList.Cursor cursor : scored) {
+            cursor.next();
+        }
+
+        while (true) {
+            int id = PostingList.Cursor.END;
+
+            for (PostingList.Cursor cursor : scored) {
+                int current = cursor.current();
+
+                if (current != PostingList.Cursor.END && (id == PostingList.Cursor.END || current < id)) {
+                    id = current;
+                }
+            }
+
+            if (id == PostingList.Cursor.END) {
+                break;
+            }
+
+            double lengthNorm = BM25_K1 * (1 - BM25_B + BM25_B * songLength(id) / Math.max(averageLength, 1));
+            double score = 0;
+
+            for (int i = 0; i < scored.size(); i++) {
+                PostingList.Cursor cursor = scored.get(i);
+
+                if (cursor.current() == id) {
+                    int frequency = cursor.frequency();
+                    score += weights.get(i) * frequency * (BM25_K1 + 1) / (frequency + lengthNorm);
+                    cursor.next();
+                }
+            }
+
+            boolean isExcluded = false;
+            for (PostingList.Cursor cursor : excluded) {
+                if (cursor.advance(id) == id) {
+                    isExcluded = true;
+                    break;
+                }
+            }
+
+            if (!isExcluded) {
+                best.offer(id, score);
+            }
         }
 
-        int slot = wordIDs.get(wordID).getId();
-        return invertedIndex.get(slot);
+        return toSongs(best.toSortedIds());
+    }
+
+    /**
+     * Returns the number of indexed words in a song across all of its fields
+     * @param id the song's ID
+     * @return the song's length in words
+     */
+    private int songLength(int id) {
+        int length = 0;
+
+        for (int field = 0; field < NUM_FIELDS; field++) {
+            length += segment != null ? segment.getFieldLength(field, id) : fieldLengths[field][id];
+        }
+
+        return length;
+    }
+
+    /**
+     * Returns the first ID at or above the given one that belongs to an indexed song
+     * @param id the ID to start from
+     * @return the song ID, or PostingList.Cursor.END when there is none
+     */
+    private int nextSongId(int id) {
+        while (id < songs.size() && songs.get(id) == null) {
+            id++;
+        }
+
+        return id < songs.size() ? id : PostingList.Cursor.END;
+    }
+
+    /**
+     * Looks up the songs with the given IDs
+     * @param ids the song IDs
+     * @return the songs, in the same order as the IDs
+     */
+    private ArrayList<Song> toSongs(int[] ids) {
+        ArrayList<Song> results = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            results.add(songs.get(id));
+        }
+
+        return results;
+    }
+
+    /**
+     * Looks up the songs with the given IDs and arranges them by title
+     * @param ids the song IDs
+     * @return a BST of the songs ordered by title
+     */
+    private BST<Song> toTitleOrder(int[] ids) {
+        ArrayList<Song> matches = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            matches.add(songs.get(id));
+        }
+
+        TitleComparator titleComparator = new TitleComparator();
+        matches.sort(titleComparator);
+
+        return new BST<>(matches, titleComparator);
     }
-}
\ No newline at end of file
+}
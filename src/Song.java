@@ -7,6 +7,7 @@ public class Song {
     private String album;
     private long plays;
     private String lyrics;
+    private int id;
 
     // **** CONSTRUCTORS **** //
     /**
@@ -20,6 +21,7 @@ public class Song {
         this.album = "N/A";
         this.plays = -1;
         this.lyrics = "";
+        this.id = -1;
     }
 
     /**
@@ -37,6 +39,7 @@ public class Song {
         this.album = album;
         this.plays = plays;
         this.lyrics = lyrics;
+        this.id = -1;
     }
 
     // **** MUTATORS **** //
@@ -101,6 +104,14 @@ public class Song {
         this.lyrics = lyrics;
     }
 
+    /**
+     * Sets the dense ID the search index knows the Song by
+     * @param id the ID, or -1 if the Song is not indexed
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
     // **** ACCESSORS **** //
     /**
      * Returns the name of the Song
@@ -158,6 +169,15 @@ public class Song {
         return lyrics;
     }
 
+    /**
+     * Returns the dense ID the search index knows the Song by.
+     * IDs are small non-negative ints that stay the same while the Song is indexed.
+     * @return the ID, or -1 if the Song is not indexed
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Returns a String representation of the given Song
      * @return a String representation of the given Song
@@ -0,0 +1,344 @@
+import java.util.Arrays;
+
+/**
+ * Maps index terms to dense int IDs, numbered from 0 in the order the terms were added.
+ * Terms are stored back to back as single bytes in one shared array, and the hash
+ * table holds only term IDs, so a term costs about its length plus a few ints.
+ * Lookups accept any CharSequence or a slice of a char array and allocate nothing.
+ * Terms must be ASCII, which is all the tokenizer produces.
+ */
+public class TermDictionary {
+    private static final int MIN_CAPACITY = 16;
+
+    private byte[] pool;
+    private int poolSize;
+    private int[] offsets;
+    private int[] hashes;
+    private int numTerms;
+    private int[] slots;
+
+    // **** CONSTRUCTORS **** //
+    /**
+     * Creates an empty TermDictionary
+     * @param expectedTerms the number of terms to make room for
+     * @throws IllegalArgumentException when expectedTerms is negative
+     */
+    public TermDictionary(int expectedTerms) throws IllegalArgumentException {
+        if (expectedTerms < 0) {
+            throw new IllegalArgumentException("TermDictionary cannot have a negative size");
+        }
+
+        int capacity = Math.max(expectedTerms, MIN_CAPACITY);
+
+        pool = new byte[capacity * 8];
+        poolSize = 0;
+        offsets = new int[capacity + 1];
+        hashes = new int[capacity];
+        numTerms = 0;
+        slots = newSlots(tableSizeFor(capacity));
+    }
+
+    // **** ACCESSORS **** //
+    /**
+     * Returns the number of terms in the dictionary
+     * @return the number of terms
+     */
+    public int size() {
+        return numTerms;
+    }
+
+    /**
+     * Returns the ID of a term
+     * @param term the term to look up
+     * @return the term's ID, or -1 if it is not in the dictionary
+     */
+    public int find(CharSequence term) {
+        int hash = 0;
+
+        for (int i = 0; i < term.length(); i++) {
+            hash = 31 * hash + term.charAt(i);
+        }
+
+        int mask = slots.length - 1;
+
+        for (int slot = spread(hash) & mask; slots[slot] != -1; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+
+            if (hashes[id] == hash && termEquals(id, term)) {
+                return id;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the ID of a term given as a slice of a char array
+     * @param chars the array holding the term
+     * @param start the index of the term's first char
+     * @param length the length of the term
+     * @return the term's ID, or -1 if it is not in the dictionary
+     */
+    public int find(char[] chars, int start, int length) {
+        int hash = hash(chars, start, length);
+        int mask = slots.length - 1;
+
+        for (int slot = spread(hash) & mask; slots[slot] != -1; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+
+            if (hashes[id] == hash && termEquals(id, chars, start, length)) {
+                return id;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the term with the given ID
+     * @param id the term ID
+     * @return the term
+     * @throws IndexOutOfBoundsException when the ID is not in the dictionary
+     */
+    public String getTerm(int id) throws IndexOutOfBoundsException {
+        checkId(id);
+
+        char[] chars = new char[offsets[id + 1] - offsets[id]];
+
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) pool[offsets[id] + i];
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Returns the length of the term with the given ID
+     * @param id the term ID
+     * @return the number of chars in the term
+     * @throws IndexOutOfBoundsException when the ID is not in the dictionary
+     */
+    public int getTermLength(int id) throws IndexOutOfBoundsException {
+        checkId(id);
+
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Returns one char of the term with the given ID
+     * @param id the term ID
+     * @param index the position of the char in the term
+     * @return the char
+     * @throws IndexOutOfBoundsException when the ID or index is out of bounds
+     */
+    public char charAt(int id, int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= getTermLength(id)) {
+            throw new IndexOutOfBoundsException("charAt(" + id + ", " + index + "): index is out of bounds");
+        }
+
+        return (char) pool[offsets[id] + index];
+    }
+
+    // **** MUTATORS **** //
+    /**
+     * Returns the ID of a term, adding the term if it is new
+     * @param chars the array holding the term
+     * @param start the index of the term's first char
+     * @param length the length of the term
+     * @return the term's ID
+     * @throws IllegalArgumentException when the term is not ASCII
+     */
+    public int add(char[] chars, int start, int length) throws IllegalArgumentException {
+        int hash = hash(chars, start, length);
+        int mask = slots.length - 1;
+        int slot = spread(hash) & mask;
+
+        for (; slots[slot] != -1; slot = (slot + 1) & mask) {
+            int id = slots[slot];
+
+            if (hashes[id] == hash && termEquals(id, chars, start, length)) {
+                return id;
+            }
+        }
+
+        for (int i = start; i < start + length; i++) {
+            if (chars[i] > 0x7F) {
+                throw new IllegalArgumentException("add(): term is not ASCII");
+            }
+        }
+
+        int id = numTerms;
+        ensureCapacity(length);
+
+        for (int i = 0; i < length; i++) {
+            pool[poolSize++] = (byte) chars[start + i];
+        }
+
+        offsets[id + 1] = poolSize;
+        hashes[id] = hash;
+        numTerms++;
+
+        if (numTerms * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            slots[slot] = id;
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the ID of a term, adding the term if it is new
+     * @param term the term
+     * @return the term's ID
+     * @throws IllegalArgumentException when the term is not ASCII
+     */
+    public int add(String term) throws IllegalArgumentException {
+        return add(term.toCharArray(), 0, term.length());
+    }
+
+    /**
+     * Grows the term arrays to fit one more term of the given length
+     * @param length the length of the new term
+     */
+    private void ensureCapacity(int length) {
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        }
+
+        if (numTerms == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            offsets = Arrays.copyOf(offsets, hashes.length + 1);
+        }
+    }
+
+    /**
+     * Rebuilds the hash table with a new number of slots
+     * @param numSlots the new number of slots, a power of two
+     */
+    private void rehash(int numSlots) {
+        slots = newSlots(numSlots);
+        int mask = numSlots - 1;
+
+        for (int id = 0; id < numTerms; id++) {
+            int slot = spread(hashes[id]) & mask;
+
+            while (slots[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = id;
+        }
+    }
+
+    // **** ADDITIONAL OPERATIONS **** //
+    /**
+     * Computes the hash of a char slice, matching String.hashCode()
+     * @param chars the array holding the term
+     * @param start the index of the term's first char
+     * @param length the length of the term
+     * @return the hash
+     */
+    private static int hash(char[] chars, int start, int length) {
+        int hash = 0;
+
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        return hash;
+    }
+
+    /**
+     * Mixes the high bits of a hash into the low bits used for slot selection
+     * @param hash the hash
+     * @return the spread hash
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Determines whether a stored term equals a CharSequence
+     * @param id the stored term's ID
+     * @param term the CharSequence
+     * @return whether they are equal
+     */
+    private boolean termEquals(int id, CharSequence term) {
+        int start = offsets[id];
+
+        if (offsets[id + 1] - start != term.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < term.length(); i++) {
+            if (pool[start + i] != term.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines whether a stored term equals a char slice
+     * @param id the stored term's ID
+     * @param chars the array holding the other term
+     * @param start the index of the other term's first char
+     * @param length the length of the other term
+     * @return whether they are equal
+     */
+    private boolean termEquals(int id, char[] chars, int start, int length) {
+        int offset = offsets[id];
+
+        if (offsets[id + 1] - offset != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (pool[offset + i] != chars[start + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks that a term ID is in the dictionary
+     * @param id the term ID
+     * @throws IndexOutOfBoundsException when it is not
+     */
+    private void checkId(int id) throws IndexOutOfBoundsException {
+        if (id < 0 || id >= numTerms) {
+            throw new IndexOutOfBoundsException("Term ID " + id + " is out of bounds");
+        }
+    }
+
+    /**
+     * Returns the smallest power of two with room for the given number of terms at half load
+     * @param numTerms the number of terms
+     * @return the number of slots
+     */
+    private static int tableSizeFor(int numTerms) {
+        int size = MIN_CAPACITY;
+
+        while (size < numTerms * 2) {
+            size <<= 1;
+        }
+
+        return size;
+    }
+
+    /**
+     * Allocates an empty hash table
+     * @param numSlots the number of slots
+     * @return the slots, all marked empty
+     */
+    private static int[] newSlots(int numSlots) {
+        int[] newSlots = new int[numSlots];
+        Arrays.fill(newSlots, -1);
+        return newSlots;
+    }
+}
@@ -1,36 +1,28 @@
 import java.io.*;
-import java.util.Comparator;
+import java.text.DecimalFormat;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
 import java.util.Scanner;
+import java.util.function.Consumer;
 import java.util.ArrayList;
 
-class TitleComparator implements Comparator<Song> {
-    @Override
-    public int compare(Song s1, Song s2) {
-        return s1.getName().compareToIgnoreCase(s2.getName());
-    }
-}
-
-class PlayCountComparator implements Comparator<Song> {
-    @Override
-    public int compare(Song s1, Song s2) {
-        return Long.compare(s1.getPlays(), s2.getPlays());
-    }
-}
-
 public class TextUI {
-    private static ArrayList<Song> songList;
-    private static BST<Song> songBST;
+    private static final int PAGE_SIZE = 20;
+
+    private static Catalog catalog;
     private static SearchEngine searchEngine;
+    private static PlayTracker playTracker;
+    private static Path segmentFile;
 
     public static void main(String[] args) {
         Scanner input = new Scanner(System.in);
-        String dataFileName = "songs.txt";
-
-        songList = readFile(new File(dataFileName));
-        songList.sort(new TitleComparator());
+        String dataFileName = args.length > 0 ? args[0] : "songs.txt";
 
-        songBST = new BST<>(songList, new TitleComparator());
-        searchEngine = new SearchEngine(songList, 2000);
+        loadCatalog(new File(dataFileName));
+        playTracker = new PlayTracker(catalog, searchEngine);
 
         System.out.println("Welcome to the Sabrina Carpenter Database!");
 
@@ -46,62 +38,117 @@ public class TextUI {
 
             System.out.println();
 
-            switch (choice) {
-                case "A" -> addSong(input);
-                case "B" -> removeSong(input);
-                case "C" -> searchSong(input);
-                case "D" -> modifySong(input);
-                case "E" -> showStatistics();
-                case "F" -> displaySongs();
-                case "X" -> writeFile(input);
-                default -> System.out.println("\nInvalid menu option. Please enter A-E or X to exit.\n");
+            // Plays are applied in batches, before anything else reads or changes the catalog
+            if (!choice.equals("G")) {
+                playTracker.flush();
+            }
+
+            try {
+                switch (choice) {
+                    case "A" -> addSong(input);
+                    case "B" -> removeSong(input);
+                    case "C" -> searchSong(input);
+                    case "D" -> modifySong(input);
+                    case "E" -> showStatistics();
+                    case "F" -> displaySongs(input);
+                    case "G" -> playSong(input);
+                    case "X" -> writeFile(input);
+                    default -> System.out.println("\nInvalid menu option. Please enter A-G or X to exit.\n");
+                }
+            } catch (UncheckedIOException e) {
+                rebuildIndex(e.getCause());
             }
         }
     }
 
     /**
-     * Reads the file containing song data and returns an ArrayList of Song objects
+     * Reads the file containing song data into the song list, the BST, and the search engine.
+     * The file may be in the text format or a binary snapshot; see CatalogSnapshot.
+     * Songs are inserted and indexed as they are parsed, and malformed songs are reported
+     * and skipped. The search index saved next to the file is used instead of indexing when
+     * the file has not changed since it was saved; otherwise the new index is saved.
      * @param file the file to read from
-     * @return an ArrayList of Song objects
+     * @throws RuntimeException when the file does not exist or cannot be read in full
      */
-    private static ArrayList<Song> readFile(File file) {
-        ArrayList<Song> songs = new ArrayList<>();
+    private static void loadCatalog(File file) {
+        if (!file.exists()) {
+            throw new RuntimeException("File not found: " + file.getName());
+        }
+
+        segmentFile = Paths.get(file.getPath() + ".idx");
+        long checksum = -1;
+        IndexSegment segment = null;
 
         try {
-            if (!file.exists()) {
-                throw new FileNotFoundException();
+            checksum = IndexSegment.checksum(file.toPath());
+
+            if (Files.exists(segmentFile)) {
+                segment = new IndexSegment(segmentFile);
             }
-        } catch (FileNotFoundException error) {
-            throw new RuntimeException("File not found: " + file.getName());
+        } catch (IOException e) {
+            System.out.println("Rebuilding the search index: " + e.getMessage());
+        }
+
+        if (segment != null && segment.getSourceChecksum() != checksum) {
+            segment = null;
         }
 
-        try (Scanner scanner = new Scanner(new FileReader(file))) {
-            while (scanner.hasNextLine()) {
-                String name = scanner.nextLine().trim();
+        catalog = new Catalog();
+        searchEngine = new SearchEngine(new ArrayList<>(), 2000, true);
 
-                if (name.isEmpty()) {
-                    continue;
-                }
+        boolean indexing = segment == null;
 
-                String album = scanner.nextLine().split(": ")[1].trim();
-                String length = scanner.nextLine().split(": ")[1].trim();
-                int releaseYear = Integer.parseInt(scanner.nextLine().split(": ")[1].trim());
-                long plays = Long.parseLong(scanner.nextLine().split(": ")[1].trim().replaceAll(",", ""));
-                String lyrics = scanner.nextLine().split(": ")[1].trim();
+        try {
+            new CatalogIngest().ingest(file.toPath(), song -> {
+                catalog.add(song);
 
+                if (indexing) {
+                    searchEngine.indexSong(song);
+                }
+            }, error -> System.out.println("Skipping malformed song at " + error));
+        } catch (IOException e) {
+            // Running on part of the catalog would drop the rest of it when the file is written back
+            throw new RuntimeException("Error reading file " + file.getName() + ": " + e.getMessage(), e);
+        }
 
-                int minutes = Integer.parseInt(length.split(":")[0].trim());
-                int seconds = Integer.parseInt(length.split(":")[1].trim());
-                int totalLength = minutes * 60 + seconds;
+        if (segment != null) {
+            try {
+                searchEngine = new SearchEngine(segment, checksum, catalog.getSongs(), 2000);
+                return;
+            } catch (IOException e) {
+                System.out.println("Rebuilding the search index: " + e.getMessage());
+                searchEngine = new SearchEngine(catalog.getSongs(), 2000, true);
+            }
+        }
 
-                Song song = new Song(name, totalLength, releaseYear, album, plays, lyrics);
-                songs.add(song);
+        if (checksum != -1) {
+            try {
+                searchEngine.save(segmentFile, checksum);
+            } catch (IOException e) {
+                System.out.println("Could not save the search index: " + e.getMessage());
             }
+        }
+    }
+
+    /**
+     * Replaces a search index whose segment file turned out to be damaged after it was
+     * opened with one rebuilt from the catalog. The damaged file is deleted, so the next
+     * start builds and saves a new one instead of reading it again.
+     * @param cause the error that revealed the damage
+     */
+    private static void rebuildIndex(IOException cause) {
+        System.out.println("The search index is damaged and is being rebuilt: " + cause.getMessage());
+        playTracker.flush();
+        searchEngine = new SearchEngine(catalog.getSongs(), 2000, true);
+        playTracker = new PlayTracker(catalog, searchEngine);
+
+        try {
+            Files.deleteIfExists(segmentFile);
         } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
+            System.out.println("Could not delete the damaged search index: " + e.getMessage());
         }
 
-        return songs;
+        System.out.println("The search index has been rebuilt from the catalog. If a search was cut short, please run it again.");
     }
 
     /**
@@ -112,11 +159,11 @@ public class TextUI {
         System.out.print("Enter the file name to write to: ");
         String fileName = input.nextLine().trim();
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
-            writer.write(songBST.inOrderString());
+        try {
+            CatalogSnapshot.writeText(Paths.get(fileName), catalog.getTitleIndex());
             System.out.println("Songs written to " + fileName + " successfully.");
             System.out.println("\nThank you for using the Sabrina Carpenter Database!");
-        } catch (IOException e) {
+        } catch (IOException | InvalidPathException e) {
             System.out.println("Error found: " + e.getMessage());
         }
     }
@@ -133,6 +180,7 @@ public class TextUI {
         System.out.println("D: Update or modify a song entry");
         System.out.println("E: Show statistics");
         System.out.println("F: Show all songs currently in the database");
+        System.out.println("G: Play a song");
         System.out.println("X: Quit program\n");
         System.out.print("Enter your choice: ");
     }
@@ -165,10 +213,8 @@ public class TextUI {
 
         Song song = new Song(songName, totalLength, releaseYear, album, plays, lyrics);
 
-        songList.add(song);
-        songList.sort(new TitleComparator());
-        songBST.insert(song, new TitleComparator());
-        searchEngine.rebuild(songList);
+        catalog.add(song);
+        searchEngine.indexSong(song);
         System.out.println("Song added successfully.");
     }
 
@@ -181,19 +227,38 @@ public class TextUI {
         String songName = input.nextLine();
 
         Song dummySong = new Song(songName);
-        Song search = songBST.search(dummySong, new TitleComparator());
+        Song search = catalog.getTitleIndex().search(dummySong, new TitleComparator());
 
         if (search == null) {
             System.out.println("Song '" + songName + "' not found.");
             return;
         }
 
-        songBST.remove(search, new TitleComparator());
-        songList.remove(search);
-        searchEngine.rebuild(songList);
+        playTracker.forget(search);
+        catalog.remove(search);
+        searchEngine.removeSong(search);
         System.out.println("Song removed successfully.");
     }
 
+    /**
+     * Plays a song by prompting the user for its name, adding one to its play count
+     * @param input the Scanner object to read user input
+     */
+    private static void playSong(Scanner input) {
+        System.out.print("Enter the song name to play: ");
+        String songName = input.nextLine();
+
+        Song song = catalog.getTitleIndex().search(new Song(songName), new TitleComparator());
+
+        if (song == null) {
+            System.out.println("Song '" + songName + "' not found.");
+            return;
+        }
+
+        playTracker.recordPlay(song);
+        System.out.println("Now playing " + song.getName() + " (" + new DecimalFormat("#,###").format(playTracker.getPlays(song)) + " plays).");
+    }
+
     /**
      * Prompts the user to search for a song by either name or keyword
      * @param input the Scanner object to read user input
@@ -202,17 +267,27 @@ public class TextUI {
         System.out.println("Would you like to:");
         System.out.println("A: Find and display one song by name");
         System.out.println("B: Find and display all songs that contain a keyword");
+        System.out.println("C: Find and display the songs that best match some keywords");
+        System.out.println("D: Find and display the most-played songs that contain a keyword");
+        System.out.println("E: Find and display the most recent songs that contain a keyword");
+        System.out.println("F: Find and display all songs with titles in a range");
+        System.out.println("G: Find and display songs by album, release year, and length");
         System.out.println();
 
         String choice = "";
-        while (!choice.equals("A") && !choice.equals("B")) {
+        while (!choice.matches("[A-G]")) {
             System.out.print("Enter your choice: ");
             choice = input.nextLine().trim().toUpperCase();
 
             switch (choice) {
                 case "A" -> searchBySongName(input);
                 case "B" -> searchByKeyword(input);
-                default -> System.out.println("Invalid choice. Please enter A or B.");
+                case "C" -> searchByRelevance(input);
+                case "D" -> searchTopSongs(input, true);
+                case "E" -> searchTopSongs(input, false);
+                case "F" -> searchByTitleRange(input);
+                case "G" -> searchByDetails(input);
+                default -> System.out.println("Invalid choice. Please enter A-G.");
             }
         }
     }
@@ -227,7 +302,7 @@ public class TextUI {
         String songName = input.nextLine().trim();
         System.out.println();
 
-        Song song = songBST.search(new Song(songName), new TitleComparator());
+        Song song = catalog.getTitleIndex().search(new Song(songName), new TitleComparator());
         if (song != null) {
             System.out.println("Song found: " + song);
         } else {
@@ -241,12 +316,35 @@ public class TextUI {
      * @param input the Scanner object to read user input
      */
     private static void searchByKeyword(Scanner input) {
-        System.out.print("Enter the keyword to search for: ");
+        System.out.print("Enter the keywords to search for (use OR and NOT to combine them, and quotes for a phrase; end a word with * for suggestions): ");
         String keyword = input.nextLine().trim();
         System.out.println();
 
+        while (keyword.endsWith("*")) {
+            String prefix = keyword.substring(keyword.lastIndexOf(' ') + 1, keyword.length() - 1);
+            ArrayList<String> suggestions = searchEngine.complete(prefix, 10, false);
+
+            if (suggestions.isEmpty()) {
+                System.out.println("No indexed words start with '" + prefix + "'.");
+            } else {
+                System.out.println("Suggestions: " + String.join(", ", suggestions));
+            }
+
+            System.out.print("Enter the keywords to search for: ");
+            keyword = input.nextLine().trim();
+            System.out.println();
+        }
+
         BST<Song> search = searchEngine.search(keyword);
         if (search.isEmpty()) {
+            search = searchEngine.searchFuzzy(keyword, 2);
+
+            if (!search.isEmpty()) {
+                System.out.println("No exact matches for '" + keyword + "'. Songs with similar words:");
+                System.out.print(search.inOrderString());
+                return;
+            }
+
             System.out.println("No songs found with the keyword: " + keyword);
 
             if (SearchEngine.stopWordsContains(keyword)) {
@@ -258,6 +356,128 @@ public class TextUI {
         }
     }
 
+    /**
+     * Searches for the songs that best match some keywords and displays them by relevance
+     * Helper method for searchSong
+     * @param input the Scanner object to read user input
+     */
+    private static void searchByRelevance(Scanner input) {
+        System.out.print("Enter the keywords to search for: ");
+        String keywords = input.nextLine().trim();
+        System.out.println();
+
+        ArrayList<Song> results = searchEngine.searchRanked(keywords, 10);
+        if (results.isEmpty()) {
+            System.out.println("No songs found matching: " + keywords);
+        } else {
+            System.out.println("Best matches for '" + keywords + "':");
+
+            for (int i = 0; i < results.size(); i++) {
+                System.out.println((i + 1) + ". " + results.get(i));
+            }
+        }
+    }
+
+    /**
+     * Searches for songs that contain a keyword and displays only the most-played or most recent ones
+     * Helper method for searchSong
+     * @param input the Scanner object to read user input
+     * @param byPlays whether to order by play count rather than release year
+     */
+    private static void searchTopSongs(Scanner input, boolean byPlays) {
+        System.out.print("Enter the keywords to search for (use OR and NOT to combine them): ");
+        String keyword = input.nextLine().trim();
+        System.out.println();
+
+        ArrayList<Song> results = byPlays ? searchEngine.searchMostPlayed(keyword, 10) : searchEngine.searchMostRecent(keyword, 10);
+        if (results.isEmpty()) {
+            System.out.println("No songs found with the keyword: " + keyword);
+        } else {
+            System.out.println((byPlays ? "Most-played" : "Most recent") + " songs with the keyword '" + keyword + "':");
+
+            for (int i = 0; i < results.size(); i++) {
+                System.out.println((i + 1) + ". " + results.get(i));
+            }
+        }
+    }
+
+    /**
+     * Searches for the songs whose titles fall between two titles, inclusive, and displays them in title order
+     * Helper method for searchSong
+     * @param input the Scanner object to read user input
+     */
+    private static void searchByTitleRange(Scanner input) {
+        System.out.print("Enter the first title (blank to start from the beginning): ");
+        String from = input.nextLine().trim();
+        System.out.print("Enter the last title (blank to go to the end): ");
+        String to = input.nextLine().trim();
+        System.out.println();
+
+        Song low = from.isEmpty() ? null : new Song(from);
+        Song high = to.isEmpty() ? null : new Song(to);
+        TitleComparator cmp = new TitleComparator();
+
+        if (low != null && high != null && cmp.compare(low, high) > 0) {
+            System.out.println("The first title must not come after the last title.");
+            return;
+        }
+
+        int count = catalog.getTitleIndex().countRange(low, true, high, true, cmp);
+        if (count == 0) {
+            System.out.println("No songs found with titles in that range.");
+            return;
+        }
+
+        System.out.println(count + " songs with titles in that range:");
+        catalog.getTitleIndex().rangeStream(low, true, high, true, cmp).forEach(System.out::println);
+    }
+
+    /**
+     * Searches for the songs matching an album, a span of release years, and a longest length,
+     * any of which may be left blank, and displays them in title order
+     * Helper method for searchSong
+     * @param input the Scanner object to read user input
+     */
+    private static void searchByDetails(Scanner input) {
+        Catalog.Filter filter = new Catalog.Filter();
+
+        System.out.print("Enter the album name (blank for any): ");
+        String album = input.nextLine().trim();
+        if (!album.isEmpty()) {
+            filter.album(album);
+        }
+
+        System.out.print("Enter the earliest release year (blank for any): ");
+        String fromYear = input.nextLine().trim();
+        System.out.print("Enter the latest release year (blank for any): ");
+        String toYear = input.nextLine().trim();
+        System.out.print("Enter the longest length in MM:SS format (blank for any): ");
+        String maxLength = input.nextLine().trim();
+        System.out.println();
+
+        try {
+            filter.years(fromYear.isEmpty() ? null : Integer.parseInt(fromYear), toYear.isEmpty() ? null : Integer.parseInt(toYear));
+
+            if (!maxLength.isEmpty()) {
+                Song length = new Song("");
+                length.setLength(maxLength);
+                filter.length(null, length.getLength());
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("Invalid year or length.");
+            return;
+        }
+
+        ArrayList<Song> results = catalog.find(filter);
+        if (results.isEmpty()) {
+            System.out.println("No songs found with those details.");
+            return;
+        }
+
+        System.out.println(results.size() + " songs found:");
+        results.forEach(System.out::println);
+    }
+
     /**
      * Modifies the details of an existing song by prompting the user for changes
      * @param input the Scanner object to read user input
@@ -267,7 +487,7 @@ public class TextUI {
         String songName = input.nextLine();
 
         Song dummySong = new Song(songName);
-        Song search = songBST.search(dummySong, new TitleComparator());
+        Song search = catalog.getTitleIndex().search(dummySong, new TitleComparator());
 
         if (search == null) {
             System.out.println("Song '" + songName + "' not found.");
@@ -288,78 +508,142 @@ public class TextUI {
         System.out.println("F: Lyrics");
         System.out.println();
 
-        String choice = "";
-        while (!choice.matches("[A-F]")) {
+        Consumer<Song> change = null;
+        while (change == null) {
             System.out.print("Enter your choice: ");
-            choice = input.nextLine().trim().toUpperCase();
+            String choice = input.nextLine().trim().toUpperCase();
 
             switch (choice) {
                 case "A" -> {
                     System.out.print("Enter the new song name: ");
                     String newName = input.nextLine();
-                    search.setName(newName);
+                    change = song -> song.setName(newName);
                 }
                 case "B" -> {
                     System.out.print("Enter the new length in MM:SS format: ");
-                    search.setLength(input.nextLine());
+                    String newLength = input.nextLine();
+                    change = song -> song.setLength(newLength);
                 }
                 case "C" -> {
                     System.out.print("Enter the new release year: ");
                     int newYear = Integer.parseInt(input.nextLine());
-                    search.setReleaseYear(newYear);
+                    change = song -> song.setReleaseYear(newYear);
                 }
                 case "D" -> {
                     System.out.print("Enter the new album name: ");
                     String newAlbum = input.nextLine();
-                    search.setAlbum(newAlbum);
+                    change = song -> song.setAlbum(newAlbum);
                 }
                 case "E" -> {
                     System.out.print("Enter the new number of plays: ");
                     long newPlays = Long.parseLong(input.nextLine().trim().replaceAll(",", ""));
-                    search.setPlays(newPlays);
+                    change = song -> song.setPlays(newPlays);
                 }
                 case "F" -> {
                     System.out.print("Enter the new lyrics: ");
                     String newLyrics = input.nextLine();
-                    search.setLyrics(newLyrics);
+                    change = song -> song.setLyrics(newLyrics);
                 }
                 default -> System.out.println("Invalid choice. Please enter A-F.");
             }
         }
 
+        // The catalog moves the song to its new place in every index
+        catalog.modify(search, change);
+        searchEngine.reindexSong(search);
         System.out.println("Song modified successfully.");
-        songBST.rebuild(new TitleComparator());
-        searchEngine.rebuild(songList);
     }
 
     /**
      * Displays statistics about the song database, including the total number of songs,
+     * the plays, the most- and least-played songs, and the number of songs per album and year.
+     * The statistics are kept up to date by the catalog, so nothing is recounted here.
      */
     private static void showStatistics() {
-        BST<Song> sortedByPlays = new BST<>(songBST, new PlayCountComparator());
+        CatalogStatistics stats = catalog.getStatistics();
+        DecimalFormat df = new DecimalFormat("#,###");
 
         System.out.println("Database Statistics");
         System.out.println("-------------------");
 
-        System.out.println("Total number of songs: " + songBST.getSize());
+        System.out.println("Total number of songs: " + stats.getCount());
+        if (stats.getCount() == 0) {
+            return;
+        }
+
+        System.out.println("Total plays: " + df.format(stats.getTotalPlays()));
+        System.out.println("Average plays per song: " + df.format(stats.getMeanPlays()));
         System.out.println();
 
         System.out.println("Most played song:");
-        System.out.println(sortedByPlays.findMax());
+        System.out.println(stats.getMostPlayed());
 
         System.out.println("Least played song:");
-        System.out.println(sortedByPlays.findMin());
+        System.out.println(stats.getLeastPlayed());
+
+        System.out.println("Top 5 most played:");
+        ArrayList<Song> chart = catalog.getMostPlayed(5);
+        for (int i = 0; i < chart.size(); i++) {
+            System.out.println("  " + (i + 1) + ". " + chart.get(i).getName() + " (" + df.format(chart.get(i).getPlays()) + ")");
+        }
+        System.out.println();
+
+        System.out.println("Songs per album:");
+        stats.getAlbumCounts().forEach((album, count) -> System.out.println("  " + album + ": " + count));
+        System.out.println();
+
+        System.out.println("Songs per release year:");
+        stats.getYearCounts().forEach((year, count) -> System.out.println("  " + year + ": " + count));
     }
 
     /**
-     * Displays all songs currently in the database
+     * Displays the songs currently in the database in title order, a page at a time.
+     * Each page is found by position in the BST, so paging costs the same anywhere in the catalog.
+     * @param input the Scanner object to read user input
      */
-    private static void displaySongs() {
+    private static void displaySongs(Scanner input) {
         System.out.println("All Songs in the Database:");
-        if (songList.isEmpty()) {
+        if (catalog.isEmpty()) {
             System.out.println("No songs available.");
-        } else {
-            System.out.println(songBST.inOrderString());
+            return;
+        }
+
+        int start = 0;
+
+        while (true) {
+            int total = catalog.size();
+            int end = Math.min(start + PAGE_SIZE, total);
+            Iterator<Song> songs = catalog.getTitleIndex().iterator(start);
+
+            for (int i = start; i < end; i++) {
+                System.out.println(songs.next());
+            }
+
+            System.out.println("Songs " + (start + 1) + "-" + end + " of " + total);
+            System.out.print("Enter N for the next page, P for the previous page, a song number or title to jump to, or X to stop: ");
+
+            if (!input.hasNextLine()) {
+                return;
+            }
+
+            String choice = input.nextLine().trim();
+            System.out.println();
+
+            if (choice.isEmpty() || choice.equalsIgnoreCase("X")) {
+                return;
+            } else if (choice.equalsIgnoreCase("N")) {
+                if (end == total) {
+                    System.out.println("This is the last page.\n");
+                } else {
+                    start = end;
+                }
+            } else if (choice.equalsIgnoreCase("P")) {
+                start = Math.max(0, start - PAGE_SIZE);
+            } else if (choice.chars().allMatch(Character::isDigit)) {
+                start = Math.min(Math.max(0, Integer.parseInt(choice) - 1), total - 1);
+            } else {
+                start = Math.min(catalog.getTitleIndex().rank(new Song(choice), new TitleComparator()), total - 1);
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+import java.util.Comparator;
+
+/**
+ * Orders songs by title, ignoring case
+ */
+class TitleComparator implements Comparator<Song> {
+    @Override
+    public int compare(Song s1, Song s2) {
+        return s1.getName().compareToIgnoreCase(s2.getName());
+    }
+}
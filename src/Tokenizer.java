@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * Splits text into lowercase alphanumeric tokens without allocating per token.
+ * Any character other than an ASCII letter or digit separates tokens. After each
+ * successful call to next(), the current token is the first getLength() chars of
+ * getChars(), and it stays valid until the next call.
+ */
+public class Tokenizer {
+    private CharSequence text;
+    private int index;
+    private char[] chars;
+    private int length;
+    private int position;
+
+    /**
+     * Creates a Tokenizer with no text
+     */
+    public Tokenizer() {
+        this.text = "";
+        this.index = 0;
+        this.chars = new char[32];
+        this.length = 0;
+        this.position = -1;
+    }
+
+    /**
+     * Starts tokenizing new text
+     * @param text the text to tokenize
+     */
+    public void reset(CharSequence text) {
+        this.text = text;
+        this.index = 0;
+        this.length = 0;
+        this.position = -1;
+    }
+
+    /**
+     * Advances to the next token
+     * @return whether there was another token
+     */
+    public boolean next() {
+        length = 0;
+
+        while (index < text.length()) {
+            char c = text.charAt(index++);
+
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            } else if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9')) {
+                if (length > 0) {
+                    break;
+                }
+
+                continue;
+            }
+
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, length * 2);
+            }
+
+            chars[length++] = c;
+        }
+
+        if (length == 0) {
+            return false;
+        }
+
+        position++;
+        return true;
+    }
+
+    /**
+     * Returns the buffer holding the current token
+     * @return the buffer, of which the first getLength() chars are the token
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Returns the length of the current token
+     * @return the length of the current token
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the position of the current token in the text, counting from 0
+     * @return the number of tokens before the current one
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the current token as a String
+     * @return the current token
+     */
+    public String getToken() {
+        return new String(chars, 0, length);
+    }
+}
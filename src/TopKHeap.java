@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * Keeps the k highest-scoring IDs offered to it, using a min-heap of at most k
+ * entries so that memory and the cost of each offer depend only on k.
+ * Equal scores are broken in favor of the smaller ID.
+ */
+public class TopKHeap {
+    private final int capacity;
+    private final double[] scores;
+    private final int[] ids;
+    private int size;
+
+    /**
+     * Creates an empty TopKHeap
+     * @param k the number of entries to keep
+     * @throws IllegalArgumentException when k is negative
+     */
+    public TopKHeap(int k) throws IllegalArgumentException {
+        if (k < 0) {
+            throw new IllegalArgumentException("TopKHeap cannot have a negative size");
+        }
+
+        this.capacity = k;
+        this.scores = new double[k];
+        this.ids = new int[k];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the number of entries kept so far
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Offers an ID with its score. It is kept if it ranks among the best k so far.
+     * @param id the ID
+     * @param score the ID's score
+     */
+    public void offer(int id, double score) {
+        if (size < capacity) {
+            scores[size] = score;
+            ids[size] = id;
+            siftUp(size++);
+        } else if (capacity > 0 && ranksBelow(0, score, id)) {
+            scores[0] = score;
+            ids[0] = id;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Returns the kept IDs, best first
+     * @return the IDs ordered by descending score
+     */
+    public int[] toSortedIds() {
+        Integer[] order = new Integer[size];
+
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (i, j) -> ranksBelow(i, scores[j], ids[j]) ? 1 : ranksBelow(j, scores[i], ids[i]) ? -1 : 0);
+
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = ids[order[i]];
+        }
+
+        return sorted;
+    }
+
+    /**
+     * Determines whether the entry at a heap index ranks below another score and ID
+     * @param index the heap index
+     * @param score the other score
+     * @param id the other ID
+     * @return whether the entry ranks lower
+     */
+    private boolean ranksBelow(int index, double score, int id) {
+        return scores[index] < score || (scores[index] == score && ids[index] > id);
+    }
+
+    /**
+     * Moves an entry up until its parent ranks below it
+     * @param index the heap index of the entry
+     */
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            if (!ranksBelow(index, scores[parent], ids[parent])) {
+                return;
+            }
+
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * Moves an entry down until it ranks below both children
+     * @param index the heap index of the entry
+     */
+    private void siftDown(int index) {
+        while (true) {
+            int lowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < size && ranksBelow(left, scores[lowest], ids[lowest])) {
+                lowest = left;
+            }
+
+            if (right < size && ranksBelow(right, scores[lowest], ids[lowest])) {
+                lowest = right;
+            }
+
+            if (lowest == index) {
+                return;
+            }
+
+            swap(index, lowest);
+            index = lowest;
+        }
+    }
+
+    /**
+     * Swaps two heap entries
+     * @param i the first index
+     * @param j the second index
+     */
+    private void swap(int i, int j) {
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+    }
+}
@@ -0,0 +1,370 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class BSTTest {
+    private static final Comparator<Integer> ORDER = Comparator.naturalOrder();
+
+    @Test
+    void randomChangesMatchATreeSet() {
+        Random random = new Random(1);
+        BST<Integer> tree = new BST<>();
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int step = 0; step < 20000; step++) {
+            int value = random.nextInt(2000);
+
+            if (random.nextInt(3) == 0) {
+                if (!tree.isEmpty()) {
+                    tree.remove(value, ORDER);
+                }
+
+                expected.remove(value);
+            } else if (expected.add(value)) {
+                tree.insert(value, ORDER);
+            }
+
+            int probe = random.nextInt(2000);
+            assertEquals(expected.contains(probe) ? probe : null, tree.search(probe, ORDER));
+            assertEquals(expected.size(), tree.getSize());
+            assertBalanced(tree);
+
+            if (step % 500 == 0) {
+                assertEquals(new ArrayList<>(expected), toList(tree));
+            }
+        }
+
+        assertEquals(new ArrayList<>(expected), toList(tree));
+        assertEquals(expected.first(), tree.findMin());
+        assertEquals(expected.last(), tree.findMax());
+    }
+
+    @Test
+    void sortedInsertsAndRemovesStayBalanced() {
+        BST<Integer> ascending = new BST<>();
+        BST<Integer> descending = new BST<>();
+
+        for (int i = 0; i < 1 << 14; i++) {
+            ascending.insert(i, ORDER);
+            descending.insert(-i, ORDER);
+            assertBalanced(ascending);
+            assertBalanced(descending);
+        }
+
+        // Rotations leave sequential inserts as full as a tree can be: 2^14 values need height 14
+        assertEquals(14, ascending.getHeight());
+        assertEquals(14, descending.getHeight());
+
+        for (int i = 0; i < 1 << 14; i += 2) {
+            ascending.remove(i, ORDER);
+            assertBalanced(ascending);
+        }
+
+        assertEquals(1 << 13, ascending.getSize());
+        assertEquals(1, ascending.findMin());
+    }
+
+    @Test
+    void copiesAndRebuildsKeepEveryValue() {
+        Random random = new Random(2);
+        ArrayList<Integer> sorted = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            sorted.add(random.nextInt(300));
+        }
+
+        sorted.sort(ORDER);
+        BST<Integer> tree = new BST<>(sorted, ORDER);
+        assertEquals(sorted, toList(tree));
+        assertBalanced(tree);
+
+        BST<Integer> reversed = new BST<>(tree, ORDER.reversed());
+        ArrayList<Integer> expected = new ArrayList<>(sorted);
+        expected.sort(ORDER.reversed());
+        assertEquals(expected, toList(reversed));
+        assertBalanced(reversed);
+
+        tree.rebuild(ORDER.reversed());
+        assertEquals(expected, toList(tree));
+
+        // Equal values stay separate entries
+        reversed.remove(sorted.get(0), ORDER.reversed());
+        assertEquals(sorted.size() - 1, reversed.getSize());
+    }
+
+    @Test
+    void misuseIsRejected() {
+        BST<Integer> empty = new BST<>();
+
+        assertThrows(NoSuchElementException.class, empty::getRoot);
+        assertThrows(NoSuchElementException.class, empty::findMin);
+        assertThrows(NoSuchElementException.class, empty::findMax);
+        assertThrows(NoSuchElementException.class, () -> empty.remove(1, ORDER));
+        assertThrows(IllegalArgumentException.class, () -> new BST<>(new ArrayList<>(List.of(2, 1)), ORDER));
+        assertNull(empty.search(1, ORDER));
+        assertEquals(-1, empty.getHeight());
+    }
+
+    @Test
+    void iteratorsAndStreamsVisitEveryValueInOrder() {
+        Random random = new Random(3);
+
+        for (int n : new int[] {0, 1, 2, 3, 10, 100, 1000}) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            BST<Integer> tree = randomTree(n, random, expected);
+            ArrayList<Integer> values = new ArrayList<>(expected);
+
+            ArrayList<Integer> iterated = new ArrayList<>();
+            tree.iterator().forEachRemaining(iterated::add);
+            assertEquals(values, iterated);
+            assertEquals(values, tree.stream().collect(Collectors.toList()));
+            assertEquals(values, tree.parallelStream().collect(Collectors.toList()));
+            assertEquals(values.stream().mapToLong(Integer::longValue).sum(), tree.parallelStream().mapToLong(Integer::longValue).sum());
+
+            Iterator<Integer> finished = tree.iterator();
+            finished.forEachRemaining(value -> { });
+            assertThrows(NoSuchElementException.class, finished::next);
+        }
+    }
+
+    @Test
+    void spliteratorSplitsIntoExactlySizedPiecesInOrder() {
+        Random random = new Random(4);
+
+        for (int round = 0; round < 200; round++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            BST<Integer> tree = randomTree(random.nextInt(300), random, expected);
+
+            Spliterator<Integer> whole = tree.spliterator();
+            assertEquals(expected.size(), whole.estimateSize());
+            assertTrue(whole.hasCharacteristics(Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED));
+
+            ArrayList<Integer> values = new ArrayList<>();
+            drain(whole, random, values);
+            assertEquals(new ArrayList<>(expected), values);
+        }
+    }
+
+    @Test
+    void changingTheTreeFailsOpenTraversals() {
+        BST<Integer> tree = randomTree(50, new Random(5), new TreeSet<>());
+
+        Iterator<Integer> iterator = tree.iterator();
+        iterator.next();
+        tree.insert(1000, ORDER);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+
+        Spliterator<Integer> spliterator = tree.spliterator();
+        Spliterator<Integer> prefix = spliterator.trySplit();
+        tree.remove(1000, ORDER);
+        assertThrows(ConcurrentModificationException.class, () -> spliterator.tryAdvance(value -> { }));
+        assertThrows(ConcurrentModificationException.class, () -> prefix.tryAdvance(value -> { }));
+
+        // Removing a value that is not there changes nothing, so traversals carry on
+        Iterator<Integer> unaffected = tree.iterator();
+        unaffected.next();
+        tree.remove(-1, ORDER);
+        unaffected.next();
+
+        tree.rebuild(ORDER.reversed());
+        assertThrows(ConcurrentModificationException.class, unaffected::next);
+    }
+
+    @Test
+    void positionsMatchATreeSet() {
+        Random random = new Random(6);
+        TreeSet<Integer> expected = new TreeSet<>();
+        BST<Integer> tree = randomTree(2000, random, expected);
+
+        for (int step = 0; step < 2000; step++) {
+            int value = random.nextInt(8000);
+            if (expected.add(value)) {
+                tree.insert(value, ORDER);
+            } else {
+                expected.remove(value);
+                tree.remove(value, ORDER);
+            }
+
+            ArrayList<Integer> values = new ArrayList<>(expected);
+            int index = random.nextInt(values.size());
+            int probe = random.nextInt(8000);
+
+            assertEquals(values.get(index), tree.select(index));
+            assertEquals(index, tree.rank(values.get(index), ORDER));
+            assertEquals(expected.headSet(probe).size(), tree.rank(probe, ORDER));
+
+            // A page starting at any position, including the end
+            int start = random.nextInt(values.size() + 1);
+            Iterator<Integer> page = tree.iterator(start);
+            for (int i = start; i < Math.min(start + 20, values.size()); i++) {
+                assertEquals(values.get(i), page.next());
+            }
+
+            if (start + 20 >= values.size()) {
+                assertFalse(page.hasNext());
+            }
+        }
+
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(tree.getSize()));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.iterator(tree.getSize() + 1));
+        assertThrows(NoSuchElementException.class, () -> tree.iterator(tree.getSize()).next());
+        assertEquals(0, new BST<Integer>().rank(5, ORDER));
+    }
+
+    @Test
+    void rangesMatchTreeSetSubSets() {
+        Random random = new Random(7);
+        TreeSet<Integer> expected = new TreeSet<>();
+        BST<Integer> tree = randomTree(1500, random, expected);
+
+        for (int i = 0; i < 3000; i++) {
+            Integer low = random.nextInt(10) == 0 ? null : random.nextInt(6200) - 100;
+            Integer high = random.nextInt(10) == 0 ? null : random.nextInt(6200) - 100;
+            if (low != null && high != null && low > high) {
+                Integer swap = low;
+                low = high;
+                high = swap;
+            }
+
+            boolean lowInclusive = random.nextBoolean();
+            boolean highInclusive = random.nextBoolean();
+            NavigableSet<Integer> range = expected;
+            if (low != null) {
+                range = range.tailSet(low, lowInclusive);
+            }
+            if (high != null) {
+                range = range.headSet(high, highInclusive);
+            }
+
+            ArrayList<Integer> values = new ArrayList<>(range);
+            ArrayList<Integer> iterated = new ArrayList<>();
+            tree.rangeIterator(low, lowInclusive, high, highInclusive, ORDER).forEachRemaining(iterated::add);
+
+            assertEquals(values.size(), tree.countRange(low, lowInclusive, high, highInclusive, ORDER));
+            assertEquals(values, iterated);
+            assertEquals(values, tree.rangeStream(low, lowInclusive, high, highInclusive, ORDER).collect(Collectors.toList()));
+        }
+
+        // An empty range between neighbors, and an exclusive range around a single value
+        Integer value = expected.first();
+        assertEquals(0, tree.countRange(value, false, value, false, ORDER));
+        assertEquals(0, tree.countRange(value, true, value, false, ORDER));
+        assertEquals(1, tree.countRange(value, true, value, true, ORDER));
+        assertFalse(tree.rangeIterator(value, false, value, true, ORDER).hasNext());
+
+        assertThrows(IllegalArgumentException.class, () -> tree.countRange(2, true, 1, true, ORDER));
+        assertThrows(IllegalArgumentException.class, () -> tree.rangeIterator(2, true, 1, true, ORDER));
+        assertThrows(IllegalArgumentException.class, () -> tree.rangeStream(2, true, 1, true, ORDER));
+    }
+
+    @Test
+    void changingTheTreeFailsOpenRangeScans() {
+        TreeSet<Integer> expected = new TreeSet<>();
+        BST<Integer> tree = randomTree(100, new Random(8), expected);
+
+        Iterator<Integer> scan = tree.rangeIterator(expected.first(), true, null, false, ORDER);
+        scan.next();
+        tree.insert(-5, ORDER);
+        assertThrows(ConcurrentModificationException.class, scan::next);
+    }
+
+    /**
+     * Checks that a tree is no taller than an AVL tree of its size can be. An AVL tree
+     * of n values has fewer than 1.4405 log2(n + 2) - 0.3277 levels.
+     * @param tree the tree
+     */
+    private static void assertBalanced(BST<?> tree) {
+        int n = tree.getSize();
+        double levels = 1.4405 * Math.log(n + 2) / Math.log(2) - 0.3277;
+
+        assertTrue(tree.getHeight() + 1 < levels, "height " + tree.getHeight() + " for " + n + " values");
+    }
+
+    /**
+     * Returns the values of a tree in order
+     */
+    private static <T> ArrayList<T> toList(BST<T> tree) {
+        ArrayList<T> values = new ArrayList<>();
+        tree.forEachInOrder(values::add);
+        return values;
+    }
+
+    /**
+     * Traverses a spliterator, splitting it at random along the way. The prefix a split
+     * hands off comes first, and every piece must yield exactly its estimated size.
+     * @param spliterator the spliterator to traverse
+     * @param random decides when to split and how far to advance
+     * @param values receives the values in the order they are reached
+     */
+    private static void drain(Spliterator<Integer> spliterator, Random random, List<Integer> values) {
+        while (true) {
+            if (random.nextInt(3) == 0) {
+                long before = spliterator.estimateSize();
+                Spliterator<Integer> prefix = spliterator.trySplit();
+
+                if (prefix != null) {
+                    assertEquals(before, prefix.estimateSize() + spliterator.estimateSize());
+                    drain(prefix, random, values);
+                }
+            }
+
+            long remaining = spliterator.estimateSize();
+            int start = values.size();
+
+            if (random.nextBoolean()) {
+                spliterator.forEachRemaining(values::add);
+                assertEquals(remaining, values.size() - start);
+                return;
+            }
+
+            if (!spliterator.tryAdvance(values::add)) {
+                assertEquals(0, remaining);
+                return;
+            }
+
+            assertEquals(remaining - 1, spliterator.estimateSize());
+        }
+    }
+
+    /**
+     * Builds a tree of distinct values through random inserts and removes, so its shape
+     * is not one a sorted build would give
+     * @param n the number of values
+     * @param random picks the values
+     * @param expected receives the same values
+     * @return the tree
+     */
+    private static BST<Integer> randomTree(int n, Random random, TreeSet<Integer> expected) {
+        BST<Integer> tree = new BST<>();
+
+        while (expected.size() < n) {
+            int value = random.nextInt(4 * n);
+
+            if (expected.add(value)) {
+                tree.insert(value, ORDER);
+            } else if (random.nextBoolean()) {
+                tree.remove(value, ORDER);
+                expected.remove(value);
+            }
+        }
+
+        return tree;
+    }
+}
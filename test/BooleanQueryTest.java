@@ -0,0 +1,185 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BooleanQueryTest {
+    private ArrayList<Song> songs;
+    private SearchEngine engine;
+
+    @BeforeEach
+    void indexSongs() {
+        songs = new ArrayList<>(Arrays.asList(
+                song("Hot Topic", "hot summer nights"),
+                song("Cold Front", "cold winter nights"),
+                song("Warm Welcome", "hot coffee and a cold morning"),
+                song("Topic Change", "nothing is hot anymore")));
+        engine = new SearchEngine(songs, 64);
+    }
+
+    @Test
+    void wordsAreRequiredAndAndIsImplied() {
+        assertArrayEquals(ids("Hot Topic", "Topic Change"), search("hot topic"));
+        assertArrayEquals(ids("Hot Topic", "Topic Change"), search("hot AND topic"));
+        assertArrayEquals(ids("Warm Welcome"), search("HOT cold"));
+    }
+
+    @Test
+    void orSeparatesAlternatives() {
+        assertArrayEquals(ids("Hot Topic", "Cold Front"), search("summer OR winter"));
+        assertArrayEquals(ids("Hot Topic", "Cold Front", "Warm Welcome"), search("nights OR coffee"));
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        // Read as (summer AND hot) OR (cold AND winter), not summer AND (hot OR cold) AND winter
+        assertArrayEquals(ids("Hot Topic", "Cold Front"), search("summer hot OR cold winter"));
+        assertArrayEquals(ids("Hot Topic", "Cold Front"), search("summer AND hot OR cold AND winter"));
+    }
+
+    @Test
+    void notExcludesOnlyTheNextWordOfItsAlternative() {
+        assertArrayEquals(ids("Hot Topic", "Topic Change"), search("hot NOT cold"));
+        assertArrayEquals(ids("Hot Topic", "Topic Change"), search("hot -cold"));
+        assertArrayEquals(ids("Topic Change"), search("hot NOT cold NOT summer"));
+        // The exclusion stays in the first alternative
+        assertArrayEquals(ids("Hot Topic", "Cold Front", "Topic Change"), search("hot -cold OR winter"));
+        // An alternative made only of exclusions matches every other song
+        assertArrayEquals(ids("Cold Front", "Warm Welcome"), search("-topic"));
+    }
+
+    @Test
+    void unknownAndStopWordsDoNotMatch() {
+        assertArrayEquals(ids(), search("hot zebra"));
+        assertArrayEquals(ids("Hot Topic"), search("zebra OR summer"));
+        assertArrayEquals(ids(), search("the and"));
+        assertArrayEquals(ids(), search(""));
+        assertArrayEquals(ids("Warm Welcome"), search("-zebra coffee"));
+    }
+
+    @Test
+    void parseIsLenientAboutMalformedQueries() {
+        assertEquals(List.of(List.of("hot"), List.of()), clauses("hot OR"));
+        assertEquals(List.of(List.of(), List.of("hot")), clauses("OR hot"));
+        assertEquals(List.of(List.of("hot")), clauses("hot NOT"));
+        assertEquals(List.of(List.of("hot")), clauses("- hot"));
+        assertEquals(List.of(List.of("hot", "cold")), clauses("hot-cold"));
+        // Operators are only recognized in capitals
+        assertEquals(List.of(List.of("hot", "cold")), clauses("hot or cold"));
+
+        Query.Clause clause = Query.parse("\"found again\"~99999999999 \"unclosed phrase").getClauses().get(0);
+        assertEquals(Query.MAX_SLOP, clause.getPhrases().get(0).getSlop());
+        assertEquals(List.of("unclosed", "phrase"), clause.getPhrases().get(1).getWords());
+        assertTrue(Query.parse("NOT").getClauses().get(0).isEmpty());
+    }
+
+    @Test
+    void matchesAgreeWithAScanOfEverySong() {
+        Random random = new Random(7);
+        ArrayList<Song> catalog = new CatalogGenerator(400, 11, 60, 8).toList();
+        SearchEngine searchEngine = new SearchEngine(catalog, 64);
+
+        // Removed songs leave holes in the ID space that exclusions must skip
+        for (int i = 0; i < 40; i++) {
+            searchEngine.removeSong(catalog.remove(random.nextInt(catalog.size())));
+        }
+
+        ArrayList<HashSet<String>> words = new ArrayList<>();
+        ArrayList<String> vocabulary = new ArrayList<>();
+        for (Song song : catalog) {
+            words.add(words(song));
+            vocabulary.addAll(words.get(words.size() - 1));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            StringBuilder text = new StringBuilder();
+            int numWords = 1 + random.nextInt(6);
+
+            for (int w = 0; w < numWords; w++) {
+                int kind = random.nextInt(8);
+                String word = vocabulary.get(random.nextInt(vocabulary.size()));
+                text.append(kind == 0 ? "OR " : kind == 1 ? "-" : kind == 2 ? "NOT " : "").append(word).append(' ');
+            }
+
+            Query query = Query.parse(text.toString());
+            ArrayList<Integer> expected = new ArrayList<>();
+
+            for (int s = 0; s < catalog.size(); s++) {
+                for (Query.Clause clause : query.getClauses()) {
+                    if (!clause.isEmpty() && words.get(s).containsAll(clause.getRequired())
+                            && clause.getExcluded().stream().noneMatch(words.get(s)::contains)) {
+                        expected.add(catalog.get(s).getId());
+                        break;
+                    }
+                }
+            }
+
+            int[] expectedIds = expected.stream().mapToInt(Integer::intValue).sorted().toArray();
+            assertArrayEquals(expectedIds, searchEngine.searchIds(query), text.toString());
+        }
+    }
+
+    /**
+     * Returns the indexed words of a song, the way the engine tokenizes its fields
+     */
+    private static HashSet<String> words(Song song) {
+        HashSet<String> words = new HashSet<>();
+        Tokenizer tokenizer = new Tokenizer();
+
+        for (String field : List.of(song.getLyrics(), song.getName(), song.getAlbum(), Integer.toString(song.getReleaseYear()))) {
+            tokenizer.reset(field);
+
+            while (tokenizer.next()) {
+                if (!SearchEngine.stopWordsContains(tokenizer.getToken())) {
+                    words.add(tokenizer.getToken());
+                }
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Returns the required words of each alternative of a query
+     */
+    private static List<List<String>> clauses(String text) {
+        List<List<String>> clauses = new ArrayList<>();
+
+        for (Query.Clause clause : Query.parse(text).getClauses()) {
+            clauses.add(clause.getRequired());
+        }
+
+        return clauses;
+    }
+
+    private static Song song(String name, String lyrics) {
+        return new Song(name, 180, 2020, "Album", 1, lyrics);
+    }
+
+    private int[] search(String query) {
+        return engine.searchIds(Query.parse(query));
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            for (Song song : songs) {
+                if (song.getName().equals(names[i])) {
+                    ids[i] = song.getId();
+                }
+            }
+        }
+
+        Arrays.sort(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+
+public class CatalogGeneratorTest {
+    @Test
+    void theSameSeedGivesTheSameSongs() {
+        ArrayList<Song> listed = new CatalogGenerator(500, 42, 2000, 60).toList();
+        CatalogGenerator streamed = new CatalogGenerator(500, 42, 2000, 60);
+
+        for (Song song : listed) {
+            assertEquals(describe(song), describe(streamed.next()));
+        }
+
+        assertFalse(streamed.hasNext());
+        assertEquals(500, streamed.getGenerated());
+        assertThrows(NoSuchElementException.class, streamed::next);
+        assertNotEquals(checksum(listed), checksum(new CatalogGenerator(500, 43, 2000, 60).toList()));
+    }
+
+    @Test
+    void aFixedSeedGivesAFixedCatalog() {
+        // Computed once; a change here means catalogs generated before no longer reproduce
+        assertEquals(1523065526L, checksum(new CatalogGenerator(1000, 2024).toList()));
+        assertEquals(3707499002L, checksum(new CatalogGenerator(1000, 7, 500, 40).toList()));
+    }
+
+    @Test
+    void wordFrequenciesFollowZipfsLaw() {
+        HashMap<String, Integer> counts = new HashMap<>();
+
+        for (Song song : new CatalogGenerator(3000, 11, 500, 100).toList()) {
+            for (String word : song.getLyrics().split(" ")) {
+                counts.merge(word, 1, Integer::sum);
+            }
+        }
+
+        ArrayList<Integer> byRank = new ArrayList<>(counts.values());
+        byRank.sort((count1, count2) -> Integer.compare(count2, count1));
+
+        assertTrue(counts.size() <= 500);
+        // The most common word is the first word of the vocabulary, and the shortest
+        assertEquals(byRank.get(0), counts.get("ba"));
+
+        for (int rank : List.of(2, 3, 5, 10, 20, 50)) {
+            double ratio = (double) byRank.get(rank - 1) / byRank.get(0);
+            assertEquals(1.0 / rank, ratio, 0.15 / rank, "rank " + rank);
+        }
+    }
+
+    @Test
+    void songsHaveTheRequestedShape() {
+        ArrayList<Song> songs = new CatalogGenerator(400, 3, 1000, 37).toList();
+
+        for (Song song : songs) {
+            assertEquals(37, song.getLyrics().split(" ").length);
+            assertTrue(song.getLength() >= 60 && song.getLength() <= 900);
+            assertTrue(song.getReleaseYear() >= 1950 && song.getReleaseYear() <= 2025);
+            assertTrue(song.getPlays() >= 0);
+            assertTrue(song.getLyrics().toLowerCase().contains(song.getName().toLowerCase()));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new CatalogGenerator(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CatalogGenerator(1, 1, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new CatalogGenerator(1, 1, 10, 0));
+    }
+
+    /**
+     * Hashes every field of a list of songs
+     */
+    private static long checksum(List<Song> songs) {
+        CRC32 crc = new CRC32();
+
+        for (Song song : songs) {
+            crc.update(describe(song).getBytes(StandardCharsets.UTF_8));
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Returns every field of a song as one line
+     */
+    private static String describe(Song song) {
+        return song.getName() + "|" + song.getAlbum() + "|" + song.getLength() + "|" + song.getReleaseYear() + "|"
+                + song.getPlays() + "|" + song.getLyrics() + "\n";
+    }
+}
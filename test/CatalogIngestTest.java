@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CatalogIngestTest {
+    private static final int NUM_SONGS = 40 * CatalogIngest.RECORDS_PER_CHUNK;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private ArrayList<Song> songs;
+
+    @BeforeEach
+    void writeCatalog() throws IOException {
+        songs = new CatalogGenerator(NUM_SONGS, 5, 500, 10).toList();
+        file = dir.resolve("songs.txt");
+        CatalogSnapshot.writeText(file, songs);
+    }
+
+    @Test
+    void songsAndErrorsArriveInFileOrder() throws IOException {
+        int brokenLine = Files.readAllLines(file).size() + 2;
+        Files.writeString(file, "\nBroken Song\nAlbum: Nowhere\n", StandardOpenOption.APPEND);
+
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<CatalogIngest.RecordError> errors = new ArrayList<>();
+        int count = assertTimeoutPreemptively(TIMEOUT,
+                () -> new CatalogIngest(3, 2).ingest(file, song -> names.add(song.getName()), errors::add));
+
+        assertEquals(NUM_SONGS, count);
+        assertEquals(NUM_SONGS, names.size());
+        for (int i = 0; i < NUM_SONGS; i++) {
+            assertEquals(songs.get(i).getName(), names.get(i));
+        }
+
+        assertEquals(1, errors.size());
+        assertEquals(brokenLine, errors.get(0).getLineNumber());
+    }
+
+    @Test
+    void workerFailureIsRethrownInsteadOfHanging() {
+        String failing = songs.get(NUM_SONGS / 2).getName();
+        CatalogIngest ingest = new CatalogIngest(3, 2, lines -> {
+            if (lines.get(0).equals(failing)) {
+                throw new IllegalStateException("parser bug");
+            }
+
+            return CatalogSnapshot.parseTextRecord(lines);
+        });
+
+        IllegalStateException thrown = assertTimeoutPreemptively(TIMEOUT,
+                () -> assertThrows(IllegalStateException.class, () -> ingest.ingest(file, song -> { }, error -> { })));
+        assertEquals("parser bug", thrown.getMessage());
+    }
+
+    @Test
+    void slowChunkHoldsBackTheReader() throws Exception {
+        int numWorkers = 2;
+        int queueCapacity = 2;
+        String first = songs.get(0).getName();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger parsed = new AtomicInteger();
+
+        // The first chunk stalls, so every later chunk finishes ahead of it and has to wait to be reordered
+        CatalogIngest ingest = new CatalogIngest(numWorkers, queueCapacity, lines -> {
+            if (lines.get(0).equals(first)) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            parsed.incrementAndGet();
+            return CatalogSnapshot.parseTextRecord(lines);
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> count = executor.submit(() -> ingest.ingest(file, song -> { }, error -> { }));
+
+            // Wait until parsing stops making progress
+            for (int last = -1; parsed.get() != last; ) {
+                last = parsed.get();
+                Thread.sleep(200);
+            }
+
+            int maxChunks = 2 * queueCapacity + numWorkers;
+            assertTrue(parsed.get() <= maxChunks * CatalogIngest.RECORDS_PER_CHUNK,
+                    parsed.get() + " records parsed while the first chunk was stalled");
+
+            release.countDown();
+            assertEquals(NUM_SONGS, count.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class CatalogSnapshotTest {
+    @TempDir
+    Path dir;
+
+    private ArrayList<Song> songs;
+
+    @BeforeEach
+    void makeSongs() {
+        songs = new CatalogGenerator(300, 9, 1000, 30).toList();
+        songs.add(new Song("Ciao: Adios", 61, 1999, "Señorita: Remixes", Long.MAX_VALUE, "naïve café — ünïcödé: yes"));
+        songs.add(new Song("Zero", 0, 2000, "Nothing", 0, "quiet"));
+    }
+
+    @Test
+    void binarySnapshotRoundTrips() throws IOException {
+        Path file = dir.resolve("songs.bin");
+        CatalogSnapshot.writeSnapshot(file, songs);
+
+        assertTrue(CatalogSnapshot.isSnapshot(file));
+        assertSameSongs(songs, CatalogSnapshot.readSnapshot(file));
+        assertSameSongs(songs, CatalogSnapshot.read(file));
+    }
+
+    @Test
+    void textExportRoundTrips() throws IOException {
+        Path file = dir.resolve("songs.txt");
+        CatalogSnapshot.writeText(file, songs);
+
+        assertFalse(CatalogSnapshot.isSnapshot(file));
+        assertSameSongs(songs, CatalogSnapshot.readText(file));
+
+        // The streaming writers produce the same file
+        Path streamed = dir.resolve("streamed.txt");
+        CatalogSnapshot.writeText(streamed, songs.iterator());
+        assertEquals(Files.readString(file), Files.readString(streamed));
+    }
+
+    @Test
+    void treeExportIsInTitleOrder() throws IOException {
+        Catalog catalog = new Catalog();
+        songs.forEach(catalog::add);
+
+        Path file = dir.resolve("songs.txt");
+        CatalogSnapshot.writeText(file, catalog.getTitleIndex());
+
+        ArrayList<Song> expected = new ArrayList<>();
+        catalog.getTitleIndex().forEachInOrder(expected::add);
+        assertSameSongs(expected, CatalogSnapshot.readText(file));
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        Path file = dir.resolve("songs.bin");
+        CatalogSnapshot.writeSnapshot(file, songs.subList(0, 5));
+        byte[] bytes = Files.readAllBytes(file);
+
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(file, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> CatalogSnapshot.readSnapshot(file), "cut to " + length + " bytes");
+        }
+    }
+
+    @Test
+    void corruptSnapshotIsRejected() throws IOException {
+        Path file = dir.resolve("songs.bin");
+        CatalogSnapshot.writeSnapshot(file, songs.subList(0, 5));
+        byte[] bytes = Files.readAllBytes(file);
+
+        // The version, the song count, and the length of the first name
+        for (int[] corruption : new int[][] {{4, 2}, {8, -1}, {12, Integer.MAX_VALUE}, {12, -5}}) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+            Files.write(file, corrupt);
+
+            assertThrows(IOException.class, () -> CatalogSnapshot.readSnapshot(file));
+        }
+    }
+
+    @Test
+    void playsMustFitInALong() throws IOException {
+        Path file = dir.resolve("songs.txt");
+
+        Files.writeString(file, record("9,223,372,036,854,775,807"));
+        assertEquals(Long.MAX_VALUE, CatalogSnapshot.readText(file).get(0).getPlays());
+
+        for (String plays : List.of("9,223,372,036,854,775,808", "99999999999999999999", ",", "12a")) {
+            Files.writeString(file, record(plays));
+            assertThrows(IOException.class, () -> CatalogSnapshot.readText(file), plays);
+        }
+    }
+
+    /**
+     * Returns one song in the text format with the given plays value
+     * @param plays the text after "Plays: "
+     * @return the record
+     */
+    private static String record(String plays) {
+        return "Title\nAlbum: Album\nLength: 03:00\nRelease Date: 2020\nPlays: " + plays + "\nLyrics: words\n";
+    }
+
+    /**
+     * Checks that two lists hold songs with the same fields in the same order
+     * @param expected the songs written
+     * @param actual the songs read back
+     */
+    private static void assertSameSongs(List<Song> expected, List<Song> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            Song want = expected.get(i);
+            Song got = actual.get(i);
+
+            assertEquals(want.getName(), got.getName());
+            assertEquals(want.getAlbum(), got.getAlbum());
+            assertEquals(want.getLength(), got.getLength());
+            assertEquals(want.getReleaseYear(), got.getReleaseYear());
+            assertEquals(want.getPlays(), got.getPlays());
+            assertEquals(want.getLyrics(), got.getLyrics());
+        }
+    }
+}
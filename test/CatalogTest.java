@@ -0,0 +1,230 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class CatalogTest {
+    private static final String[] ALBUMS = {"Red", "red", "Blue", "Green", "Emails I Can't Send"};
+    private static final String[] WORDS = {"nonsense", "feather", "espresso", "please", "taste", "juno"};
+
+    @Test
+    void indexesAndStatisticsFollowEveryChange() {
+        Random random = new Random(4);
+        Catalog catalog = new Catalog();
+        // The songs in the order they were added, which is how every index breaks ties
+        ArrayList<Song> expected = new ArrayList<>();
+
+        for (int step = 0; step < 3000; step++) {
+            int action = random.nextInt(10);
+
+            if (action < 4 || expected.isEmpty()) {
+                // Copies of existing songs check that equal songs stay separate entries
+                Song song = !expected.isEmpty() && random.nextInt(5) == 0 ? copy(pick(expected, random)) : randomSong(random);
+                catalog.add(song);
+                expected.add(song);
+            } else if (action < 7) {
+                Song song = pick(expected, random);
+                assertTrue(catalog.remove(song));
+                assertFalse(catalog.remove(song));
+                expected.remove(indexOf(expected, song));
+            } else {
+                Song song = pick(expected, random);
+                Song template = randomSong(random);
+
+                switch (random.nextInt(5)) {
+                    case 0 -> catalog.modify(song, s -> s.setName(template.getName()));
+                    case 1 -> catalog.modify(song, s -> s.setAlbum(template.getAlbum()));
+                    case 2 -> catalog.modify(song, s -> s.setReleaseYear(template.getReleaseYear()));
+                    case 3 -> catalog.modify(song, s -> s.setLength(template.getLength()));
+                    default -> catalog.modify(song, s -> s.setPlays(template.getPlays()));
+                }
+            }
+
+            if (step % 25 == 0) {
+                assertConsistent(catalog, expected, random);
+            }
+        }
+
+        assertConsistent(catalog, expected, random);
+    }
+
+    @Test
+    void misuseIsRejected() {
+        Catalog catalog = new Catalog();
+        Song song = randomSong(new Random(1));
+        catalog.add(song);
+
+        assertThrows(IllegalArgumentException.class, () -> catalog.add(song));
+        assertThrows(NoSuchElementException.class, () -> catalog.modify(copy(song), s -> s.setPlays(1)));
+        assertThrows(IllegalArgumentException.class, () -> catalog.getMostPlayed(-1));
+        assertFalse(catalog.remove(copy(song)));
+        assertTrue(catalog.contains(song));
+    }
+
+    @Test
+    void aFailedChangeLeavesTheSongIndexed() {
+        Catalog catalog = new Catalog();
+        Song song = new Song("Feather", 185, 2023, "Emails I Can't Send", 100, "feather");
+        catalog.add(song);
+
+        assertThrows(IllegalStateException.class, () -> catalog.modify(song, s -> {
+            s.setPlays(500);
+            throw new IllegalStateException("change failed");
+        }));
+
+        // The song is back in every index under the value it was left with
+        assertEquals(List.of(song), catalog.findByPlays(500L, 500L).collect(Collectors.toList()));
+        assertEquals(500, catalog.getStatistics().getTotalPlays());
+        assertTrue(catalog.remove(song));
+        assertEquals(0, catalog.getStatistics().getCount());
+    }
+
+    /**
+     * Checks every index and statistic of a catalog against a scan of the expected songs
+     * @param catalog the catalog
+     * @param expected the songs it should hold, in the order they were added
+     * @param random picks the ranges to check
+     */
+    private static void assertConsistent(Catalog catalog, ArrayList<Song> expected, Random random) {
+        assertEquals(expected.size(), catalog.size());
+        assertEquals(expected.isEmpty(), catalog.isEmpty());
+        assertSameSongs(expected, catalog.getSongs());
+        assertEquals(expected.size(), catalog.getTitleIndex().getSize());
+
+        for (String album : ALBUMS) {
+            assertSameSongs(filter(expected, s -> s.getAlbum().equalsIgnoreCase(album)), catalog.findByAlbum(album));
+        }
+
+        int fromYear = 1998 + random.nextInt(10);
+        int toYear = fromYear + random.nextInt(4);
+        assertSameSongs(sorted(filter(expected, s -> s.getReleaseYear() >= fromYear && s.getReleaseYear() <= toYear),
+                Song::getReleaseYear), catalog.findByYear(fromYear, toYear));
+        assertSameSongs(sorted(filter(expected, s -> s.getReleaseYear() >= fromYear), Song::getReleaseYear),
+                catalog.findByYear(fromYear, null));
+
+        int minLength = 95 + random.nextInt(20);
+        assertSameSongs(sorted(filter(expected, s -> s.getLength() <= minLength), Song::getLength),
+                catalog.findByLength(null, minLength));
+
+        long minPlays = random.nextInt(25);
+        long maxPlays = minPlays + random.nextInt(10);
+        assertSameSongs(sorted(filter(expected, s -> s.getPlays() >= minPlays && s.getPlays() <= maxPlays), Song::getPlays),
+                catalog.findByPlays(minPlays, maxPlays));
+
+        String album = ALBUMS[random.nextInt(ALBUMS.length)];
+        Catalog.Filter filter = new Catalog.Filter().album(album).years(fromYear, null).plays(null, maxPlays);
+        ArrayList<Song> matches = filter(expected, filter::matches);
+        matches.sort(new TitleComparator());
+        assertSameSongs(matches, catalog.find(filter));
+
+        ArrayList<Song> byPlays = sorted(expected, Song::getPlays);
+        int count = random.nextInt(expected.size() + 2);
+        ArrayList<Song> chart = new ArrayList<>();
+        for (int i = byPlays.size() - 1; i >= 0 && chart.size() < count; i--) {
+            chart.add(byPlays.get(i));
+        }
+        assertSameSongs(chart, catalog.getMostPlayed(count));
+
+        CatalogStatistics statistics = catalog.getStatistics();
+        assertEquals(expected.size(), statistics.getCount());
+        assertEquals(expected.stream().mapToLong(Song::getPlays).sum(), statistics.getTotalPlays());
+
+        if (!expected.isEmpty()) {
+            assertSame(byPlays.get(byPlays.size() - 1), statistics.getMostPlayed());
+            assertSame(byPlays.get(0), statistics.getLeastPlayed());
+        }
+
+        TreeMap<String, Integer> albumCounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        TreeMap<Integer, Integer> yearCounts = new TreeMap<>();
+        for (Song song : expected) {
+            albumCounts.merge(song.getAlbum(), 1, Integer::sum);
+            yearCounts.merge(song.getReleaseYear(), 1, Integer::sum);
+        }
+
+        assertEquals(albumCounts, statistics.getAlbumCounts());
+        assertEquals(yearCounts, statistics.getYearCounts());
+        assertEquals(albumCounts.getOrDefault("RED", 0), statistics.getAlbumCount("RED"));
+    }
+
+    /**
+     * Checks that a list or stream holds exactly the expected songs, in order
+     * @param expected the songs
+     * @param actual the songs found
+     */
+    private static void assertSameSongs(List<Song> expected, Object actual) {
+        @SuppressWarnings("unchecked")
+        List<Song> found = actual instanceof Stream ? ((Stream<Song>) actual).collect(Collectors.toList()) : (List<Song>) actual;
+
+        assertEquals(expected.size(), found.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), found.get(i));
+        }
+    }
+
+    /**
+     * Returns the songs meeting a condition, in their original order
+     */
+    private static ArrayList<Song> filter(List<Song> songs, Predicate<Song> condition) {
+        return songs.stream().filter(condition).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Sorts songs by a field, keeping songs with equal fields in the order they were added
+     */
+    private static ArrayList<Song> sorted(List<Song> songs, ToLongFunction<Song> field) {
+        ArrayList<Song> copy = new ArrayList<>(songs);
+        copy.sort(Comparator.comparingLong(field));
+        return copy;
+    }
+
+    /**
+     * Picks a random song
+     */
+    private static Song pick(List<Song> songs, Random random) {
+        return songs.get(random.nextInt(songs.size()));
+    }
+
+    /**
+     * Finds the position of this exact song, skipping equal copies
+     */
+    private static int indexOf(List<Song> songs, Song song) {
+        for (int i = 0; i < songs.size(); i++) {
+            if (songs.get(i) == song) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Makes a separate song with the same fields
+     */
+    private static Song copy(Song song) {
+        return new Song(song.getName(), song.getLength(), song.getReleaseYear(), song.getAlbum(), song.getPlays(), song.getLyrics());
+    }
+
+    /**
+     * Makes a song whose fields come from small ranges, so most of them tie with other songs
+     */
+    private static Song randomSong(Random random) {
+        String title = WORDS[random.nextInt(WORDS.length)] + (random.nextBoolean() ? "" : " " + WORDS[random.nextInt(WORDS.length)]);
+
+        return new Song(random.nextBoolean() ? title : title.toUpperCase(), 95 + random.nextInt(20), 1998 + random.nextInt(12),
+                ALBUMS[random.nextInt(ALBUMS.length)], random.nextInt(30), title);
+    }
+}
@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class HashTableTest {
+    @Test
+    void growingAndShrinkingMatchesAHashSet() {
+        Random random = new Random(1);
+        HashTable<Integer> table = new HashTable<>(4);
+        HashSet<Integer> expected = new HashSet<>();
+
+        // Grow well past the initial size, then shrink back, so resizes overlap with every kind of operation
+        for (int phase = 0; phase < 2; phase++) {
+            for (int step = 0; step < 30000; step++) {
+                int element = random.nextInt(20000);
+                boolean adding = phase == 0 ? random.nextInt(4) != 0 : random.nextInt(4) == 0;
+
+                if (adding) {
+                    if (expected.add(element)) {
+                        table.add(element);
+                    }
+                } else {
+                    assertEquals(expected.remove(element), table.delete(element));
+                }
+
+                int probe = random.nextInt(20000);
+                assertEquals(expected.contains(probe), table.contains(probe));
+                assertEquals(expected.contains(probe), table.find(probe) != -1);
+                assertEquals(expected.size(), table.getNumElements());
+            }
+        }
+
+        for (int element = 0; element < 20000; element++) {
+            assertEquals(expected.contains(element), table.contains(element));
+        }
+    }
+
+    @Test
+    void findGivesTheSameBucketForEqualHashes() {
+        HashTable<Collider> table = new HashTable<>(4);
+        ArrayList<Collider> elements = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            Collider element = new Collider(i, i % 7);
+            elements.add(element);
+            table.add(element);
+
+            // Elements with the same hash share a bucket of the current table, even mid-resize
+            assertEquals(table.find(elements.get(i % 7)), table.find(element));
+        }
+
+        for (Collider element : elements) {
+            assertSame(element, table.get(new Collider(element.value, element.hash)));
+        }
+
+        assertNull(table.get(new Collider(1000, 0)));
+
+        for (Collider element : elements) {
+            assertTrue(table.delete(element));
+        }
+
+        assertEquals(0, table.getNumElements());
+    }
+
+    /**
+     * An element whose hash code is chosen freely
+     */
+    private static final class Collider {
+        private final int value;
+        private final int hash;
+
+        private Collider(int value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Collider && ((Collider) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class IndexSegmentTest {
+    private static final long CHECKSUM = 1234;
+
+    @TempDir
+    Path dir;
+
+    private Path segmentFile;
+    private ArrayList<Song> songs;
+
+    @BeforeEach
+    void saveSegment() throws IOException {
+        songs = new ArrayList<>();
+        songs.add(new Song("Because I Liked a Boy", 196, 2022, "Emails I Can't Send", 399466733, "I liked a boy all because I liked a boy"));
+        songs.add(new Song("Espresso", 175, 2024, "Short n' Sweet", 2338919898L, "that's that me espresso move it up down left right"));
+        songs.add(new Song("Zebra", 200, 2020, "Stripes", 1000, "the zebra ran to the two trees"));
+
+        segmentFile = dir.resolve("songs.txt.idx");
+        new SearchEngine(songs, 64, true).save(segmentFile, CHECKSUM);
+    }
+
+    @Test
+    void intactSegmentLoadsAndSearches() throws IOException {
+        SearchEngine engine = new SearchEngine(segmentFile, CHECKSUM, songs, 64);
+
+        assertEquals(1, engine.search("boy").getSize());
+        assertEquals(1, engine.search("zebra").getSize());
+        assertEquals(1, engine.search("\"liked a boy\"").getSize());
+    }
+
+    @Test
+    void truncatedSegmentIsRejected() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile.toFile(), "rw")) {
+            file.setLength(file.length() - 20);
+        }
+
+        assertThrows(IOException.class, () -> new SearchEngine(segmentFile, CHECKSUM, songs, 64));
+    }
+
+    @Test
+    void extendedSegmentIsRejected() throws IOException {
+        Files.write(segmentFile, new byte[] {0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertThrows(IOException.class, () -> new IndexSegment(segmentFile));
+    }
+
+    @Test
+    void damagedHeaderIsRejectedOnOpen() throws IOException {
+        // The source checksum, which only the section checksum can catch
+        flipByte(8);
+
+        assertThrows(IOException.class, () -> new IndexSegment(segmentFile));
+    }
+
+    @Test
+    void damagedPostingsAreRejectedWhenRead() throws IOException {
+        // The byte before the footer is the last posting byte
+        flipByte(Files.size(segmentFile) - 17);
+
+        IndexSegment segment = new IndexSegment(segmentFile);
+        assertThrows(IOException.class, segment::verify);
+
+        SearchEngine engine = new SearchEngine(segment, CHECKSUM, songs, 64);
+        assertThrows(UncheckedIOException.class, () -> engine.save(dir.resolve("copy.idx"), CHECKSUM));
+    }
+
+    @Test
+    void damagedSongTablesAreRejectedWhenRead() throws IOException {
+        // The posting bytes follow the song tables and end at the footer
+        long postingsLength;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile.toFile(), "r")) {
+            file.seek(40);
+            postingsLength = file.readLong();
+        }
+
+        flipByte(Files.size(segmentFile) - 16 - postingsLength - 1);
+
+        IndexSegment segment = new IndexSegment(segmentFile);
+        assertThrows(IOException.class, segment::verify);
+        assertThrows(UncheckedIOException.class, () -> segment.readSongTerms(0));
+    }
+
+    @Test
+    void intactSegmentVerifies() throws IOException {
+        new IndexSegment(segmentFile).verify();
+    }
+
+    @Test
+    void savingReplacesTheSegmentWithoutLeavingATemporaryFile() throws IOException {
+        songs.add(new Song("Another", 180, 2021, "Stripes", 5, "one more song"));
+        new SearchEngine(songs, 64, true).save(segmentFile, CHECKSUM + 1);
+
+        assertEquals(CHECKSUM + 1, new IndexSegment(segmentFile).getSourceChecksum());
+        assertEquals(1, Files.list(dir).count());
+    }
+
+    /**
+     * Inverts every bit of one byte of the segment file
+     * @param position the byte's offset
+     */
+    private void flipByte(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile.toFile(), "rw")) {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+    }
+}
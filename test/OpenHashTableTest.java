@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class OpenHashTableTest {
+    @Test
+    void addAndDeleteMatchAHashSet() {
+        Random random = new Random(1);
+        OpenHashTable<Integer> table = new OpenHashTable<>(0);
+        HashSet<Integer> expected = new HashSet<>();
+
+        for (int step = 0; step < 50000; step++) {
+            int element = random.nextInt(5000);
+
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(element), table.delete(element));
+            } else if (expected.add(element)) {
+                table.add(element);
+            }
+
+            int probe = random.nextInt(5000);
+            assertEquals(expected.contains(probe), table.contains(probe));
+            assertEquals(expected.contains(probe), table.find(probe) != -1);
+            assertEquals(expected.size(), table.getNumElements());
+        }
+
+        for (int element = 0; element < 5000; element++) {
+            assertEquals(expected.contains(element), table.contains(element));
+        }
+    }
+
+    @Test
+    void deletingFromACollisionRunKeepsTheRestFindable() {
+        OpenHashTable<Collider> table = new OpenHashTable<>(4);
+        ArrayList<Collider> elements = new ArrayList<>();
+
+        // Every element probes from the same slot, so each delete has to shift the run back
+        for (int i = 0; i < 40; i++) {
+            Collider element = new Collider(i, 17);
+            elements.add(element);
+            table.add(element);
+        }
+
+        for (int i = 0; i < 40; i += 2) {
+            assertTrue(table.delete(elements.get(i)));
+        }
+
+        for (int i = 0; i < 40; i++) {
+            Collider probe = new Collider(i, 17);
+
+            if (i % 2 == 0) {
+                assertFalse(table.contains(probe));
+                assertNull(table.get(probe));
+            } else {
+                assertSame(elements.get(i), table.get(probe));
+            }
+        }
+
+        assertEquals(20, table.getNumElements());
+    }
+
+    @Test
+    void clearEmptiesTheTable() {
+        OpenHashTable<String> table = new OpenHashTable<>(new String[] {"a", "b", "c"}, 3);
+        assertEquals(3, table.getNumElements());
+
+        table.clear();
+        assertEquals(0, table.getNumElements());
+        assertFalse(table.contains("a"));
+
+        table.add("a");
+        assertTrue(table.contains("a"));
+    }
+
+    /**
+     * An element whose hash code is chosen freely
+     */
+    private static final class Collider {
+        private final int value;
+        private final int hash;
+
+        private Collider(int value, int hash) {
+            this.value = value;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Collider && ((Collider) obj).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelBuildTest {
+    private static final int[] PARALLELISMS = {1, 2, 4, 7};
+
+    @Test
+    void everyShardCountBuildsTheSequentialIndex() {
+        // Sizes around the smallest shard, and one large enough to split into many shards
+        for (int numSongs : new int[] {0, 1, 255, 256, 257, 600, 5000}) {
+            for (boolean positional : new boolean[] {false, true}) {
+                ArrayList<Song> songs = new CatalogGenerator(numSongs, numSongs, 2000, 30).toList();
+                SearchEngine sequential = new SearchEngine(songs, 64, positional);
+
+                for (int parallelism : PARALLELISMS) {
+                    ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+                    try {
+                        SearchEngine parallel = new SearchEngine(songs, 64, positional, pool);
+                        String build = numSongs + " songs on " + parallelism + " threads";
+
+                        assertTrue(parallel.hasSameIndexAs(sequential), build);
+                        assertSameResults(sequential, parallel, songs, positional, build);
+                    } finally {
+                        pool.shutdown();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void aParallelBuildKeepsChangingLikeASequentialOne() {
+        Random random = new Random(5);
+        ArrayList<Song> songs = new CatalogGenerator(3000, 8, 1500, 25).toList();
+        SearchEngine sequential = new SearchEngine(songs, 64, true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            SearchEngine parallel = new SearchEngine(songs, 64, true, pool);
+            ArrayList<Song> indexed = new ArrayList<>(songs);
+            CatalogGenerator newSongs = new CatalogGenerator(200, 9, 1500, 25);
+
+            for (int step = 0; step < 200; step++) {
+                // Both engines share the songs, and a song carries the ID its engine gave it
+                if (random.nextBoolean()) {
+                    Song song = indexed.remove(random.nextInt(indexed.size()));
+                    int id = song.getId();
+                    assertTrue(sequential.removeSong(song));
+                    song.setId(id);
+                    assertTrue(parallel.removeSong(song));
+                } else {
+                    Song song = newSongs.next();
+                    indexed.add(song);
+                    sequential.indexSong(song);
+                    int id = song.getId();
+                    parallel.indexSong(song);
+                    assertEquals(id, song.getId());
+                }
+            }
+
+            assertTrue(parallel.hasSameIndexAs(sequential));
+            assertSameResults(sequential, parallel, indexed, true, "after changes");
+
+            // Rebuilding in place gives the same index again
+            parallel.rebuild(indexed, pool);
+            sequential.rebuild(indexed);
+            assertTrue(parallel.hasSameIndexAs(sequential));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks that two engines answer a sample of queries identically
+     * @param expected the sequentially built engine
+     * @param actual the engine to check
+     * @param songs the indexed songs, to draw query words from
+     * @param positional whether the engines hold positions, so phrases can be queried
+     * @param build describes the build, for failure messages
+     */
+    private static void assertSameResults(SearchEngine expected, SearchEngine actual, List<Song> songs, boolean positional,
+            String build) {
+        Random random = new Random(songs.size());
+
+        for (int i = 0; i < Math.min(50, songs.size()); i++) {
+            String[] lyrics = songs.get(random.nextInt(songs.size())).getLyrics().split(" ");
+            String word = lyrics[random.nextInt(lyrics.length)];
+            String other = lyrics[random.nextInt(lyrics.length)];
+            int start = random.nextInt(lyrics.length - 1);
+            String phrase = positional ? " OR \"" + lyrics[start] + " " + lyrics[start + 1] + "\"" : "";
+            String query = word + " -" + other + " OR " + other + phrase;
+
+            assertArrayEquals(expected.searchIds(Query.parse(query)), actual.searchIds(Query.parse(query)), build + ": " + query);
+            assertArrayEquals(expected.searchIds(Query.parse(word), 2), actual.searchIds(Query.parse(word), 2), build + ": " + word);
+            assertEquals(expected.searchRanked(word + " " + other, 10), actual.searchRanked(word + " " + other, 10), build);
+            assertEquals(expected.searchMostPlayed(word, 10), actual.searchMostPlayed(word, 10), build);
+            assertEquals(expected.complete(word.substring(0, 1), 10, true), actual.complete(word.substring(0, 1), 10, true), build);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PhraseQueryTest {
+    private ArrayList<Song> songs;
+    private SearchEngine engine;
+
+    @BeforeEach
+    void indexSongs() {
+        songs = new ArrayList<>(Arrays.asList(
+                song("Once", "love is here and nothing else"),
+                song("Twice", "love me love me say that you love me"),
+                song("Apart", "love was lost in the dark and found again in love")));
+        engine = new SearchEngine(songs, 64, true);
+    }
+
+    @Test
+    void exactPhraseNeedsItsWordsAdjacentAndInOrder() {
+        assertArrayEquals(ids("Apart"), search("\"found again\""));
+        assertArrayEquals(ids(), search("\"again found\""));
+        assertArrayEquals(ids(), search("\"lost found\""));
+    }
+
+    @Test
+    void stopWordsKeepTheirPlaceInAPhrase() {
+        assertArrayEquals(ids("Apart"), search("\"lost in the dark\""));
+        assertArrayEquals(ids(), search("\"lost dark\""));
+    }
+
+    @Test
+    void sloppyPhraseMatchesInAnyOrderWithinTheWindow() {
+        // "dark" is five words from the nearest "love" on either side
+        assertArrayEquals(ids("Apart"), search("\"dark love\"~4"));
+        assertArrayEquals(ids(), search("\"dark love\"~3"));
+        assertArrayEquals(ids("Apart"), search("\"again lost\"~5"));
+    }
+
+    @Test
+    void phrasesCanBeExcluded() {
+        assertArrayEquals(ids("Once", "Apart"), search("love -\"love me love\""));
+    }
+
+    @Test
+    void phraseNeedsAPositionalIndex() {
+        SearchEngine plain = new SearchEngine(songs, 64, false);
+
+        assertThrows(IllegalStateException.class, () -> plain.searchIds(Query.parse("\"found again\"")));
+    }
+
+    @Test
+    void repeatedWordInExactPhraseNeedsAdjacentOccurrences() {
+        assertArrayEquals(ids(), search("\"love love\""));
+        assertArrayEquals(ids("Twice"), search("\"love me love\""));
+    }
+
+    @Test
+    void repeatedWordInSloppyPhraseNeedsDistinctOccurrences() {
+        assertArrayEquals(ids("Twice"), search("\"love love\"~2"));
+        assertArrayEquals(ids("Twice", "Apart"), search("\"love love\"~20"));
+        assertArrayEquals(ids("Twice"), search("\"love love love\"~10"));
+        assertArrayEquals(ids(), search("\"love love love love\"~100"));
+    }
+
+    private static Song song(String name, String lyrics) {
+        return new Song(name, 180, 2020, "Album", 1, lyrics);
+    }
+
+    private int[] search(String query) {
+        return engine.searchIds(Query.parse(query));
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+
+        for (int i = 0; i < names.length; i++) {
+            for (Song song : songs) {
+                if (song.getName().equals(names[i])) {
+                    ids[i] = song.getId();
+                }
+            }
+        }
+
+        Arrays.sort(ids);
+        return ids;
+    }
+}
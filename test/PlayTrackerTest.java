@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PlayTrackerTest {
+    private static final int NUM_SONGS = 50;
+
+    private Catalog catalog;
+    private SearchEngine searchEngine;
+    private ArrayList<Song> songs;
+    private PlayTracker tracker;
+
+    @BeforeEach
+    void loadSongs() {
+        songs = new CatalogGenerator(NUM_SONGS, 3, 200, 20).toList();
+        catalog = new Catalog();
+        songs.forEach(catalog::add);
+        searchEngine = new SearchEngine(songs, 64);
+        tracker = new PlayTracker(catalog, searchEngine);
+    }
+
+    @Test
+    void concurrentPlaysAreAllFlushed() throws InterruptedException {
+        long[] before = new long[NUM_SONGS];
+        for (int i = 0; i < NUM_SONGS; i++) {
+            before[i] = songs.get(i).getPlays();
+        }
+
+        int numThreads = 8;
+        AtomicLongArray recorded = new AtomicLongArray(NUM_SONGS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numThreads);
+        Thread[] threads = new Thread[numThreads];
+
+        for (int t = 0; t < numThreads; t++) {
+            Random random = new Random(t);
+
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+
+                    for (int i = 0; i < 20000; i++) {
+                        // Skewed towards the first songs, so threads contend on the same counters
+                        int song = Math.min(random.nextInt(NUM_SONGS), random.nextInt(NUM_SONGS));
+                        int plays = 1 + random.nextInt(3);
+
+                        tracker.recordPlays(songs.get(song), plays);
+                        recorded.addAndGet(song, plays);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            threads[t].start();
+        }
+
+        // Flushes run on the owning thread while plays are still coming in
+        start.countDown();
+        while (done.getCount() > 0) {
+            tracker.flush();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        tracker.flush();
+
+        long total = 0;
+        for (int i = 0; i < NUM_SONGS; i++) {
+            assertEquals(before[i] + recorded.get(i), songs.get(i).getPlays());
+            assertEquals(songs.get(i).getPlays(), tracker.getPlays(songs.get(i)));
+            total += songs.get(i).getPlays();
+        }
+
+        assertEquals(total, catalog.getStatistics().getTotalPlays());
+        assertEquals(0, tracker.flush());
+
+        // The play count index was updated along with the songs
+        Song mostPlayed = songs.get(0);
+        for (Song song : songs) {
+            if (song.getPlays() > mostPlayed.getPlays()) {
+                mostPlayed = song;
+            }
+        }
+
+        assertEquals(mostPlayed.getPlays(), tracker.getChart(1).get(0).getPlays());
+    }
+
+    @Test
+    void aReusedIdStartsFromItsOwnCount() {
+        Song removed = songs.get(10);
+        tracker.recordPlays(removed, 1000);
+
+        long flushedPlays = removed.getPlays();
+        assertEquals(flushedPlays + 1000, tracker.getPlays(removed));
+
+        tracker.forget(removed);
+        assertEquals(flushedPlays, tracker.getPlays(removed));
+        catalog.remove(removed);
+        searchEngine.removeSong(removed);
+
+        Song added = new Song("Newcomer", 180, 2025, "Debut", 7, "a brand new song");
+        catalog.add(added);
+        searchEngine.indexSong(added);
+
+        assertEquals(10, added.getId());
+        assertEquals(7, tracker.getPlays(added));
+
+        tracker.recordPlay(added);
+        tracker.flush();
+
+        assertEquals(8, added.getPlays());
+    }
+
+    @Test
+    void unindexedSongsAndNegativePlaysAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> tracker.recordPlay(new Song("Unknown")));
+        assertThrows(IllegalArgumentException.class, () -> tracker.recordPlays(songs.get(0), -1));
+    }
+}
@@ -0,0 +1,214 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+public class PostingListTest {
+    private static final int MAX_ID = 5000;
+
+    @Test
+    void addAndRemoveMatchASortedMap() {
+        Random random = new Random(1);
+        PostingList list = new PostingList();
+        TreeMap<Integer, int[]> expected = new TreeMap<>();
+
+        for (int step = 0; step < 20000; step++) {
+            int id = random.nextInt(MAX_ID);
+
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id) != null, list.remove(id));
+            } else {
+                int frequency = 1 + random.nextInt(5);
+                assertEquals(!expected.containsKey(id), list.add(id, frequency));
+                expected.putIfAbsent(id, new int[] {frequency});
+            }
+        }
+
+        assertMatches(expected, list);
+    }
+
+    @Test
+    void positionalEntriesKeepTheirPositions() {
+        Random random = new Random(2);
+        PostingList list = new PostingList(true);
+        TreeMap<Integer, int[]> expected = new TreeMap<>();
+
+        for (int step = 0; step < 5000; step++) {
+            int id = random.nextInt(MAX_ID);
+
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(id) != null, list.remove(id));
+            } else {
+                int[] positions = randomPositions(random);
+                assertEquals(!expected.containsKey(id), list.add(id, positions, positions.length));
+                expected.putIfAbsent(id, positions);
+            }
+        }
+
+        assertMatches(expected, list);
+    }
+
+    @Test
+    void advanceFindsTheFirstIdAtOrAboveTheTarget() {
+        Random random = new Random(3);
+        PostingList list = new PostingList();
+        TreeMap<Integer, int[]> expected = new TreeMap<>();
+
+        // Appends keep the skip entries up to date, and a later insert in the middle forces a rebuild
+        for (int id = 0; id < MAX_ID; id += 1 + random.nextInt(10)) {
+            list.add(id, 1);
+            expected.put(id, new int[] {1});
+        }
+
+        list.add(MAX_ID / 2 + 1, 1);
+        expected.putIfAbsent(MAX_ID / 2 + 1, new int[] {1});
+
+        for (int run = 0; run < 200; run++) {
+            PostingList.Cursor cursor = new PostingList.Cursor(list);
+            int target = 0;
+
+            while (true) {
+                target += random.nextInt(300);
+                Integer ceiling = expected.ceilingKey(target);
+                int id = cursor.advance(target);
+
+                assertEquals(ceiling == null ? PostingList.Cursor.END : ceiling, id);
+
+                if (id == PostingList.Cursor.END) {
+                    break;
+                }
+
+                target = id;
+            }
+        }
+    }
+
+    @Test
+    void appendAllShiftsTheAppendedIds() {
+        Random random = new Random(4);
+        PostingList first = new PostingList(true);
+        PostingList second = new PostingList(true);
+        PostingList direct = new PostingList(true);
+        TreeMap<Integer, int[]> expected = new TreeMap<>();
+
+        for (int id = 0; id < 300; id += 1 + random.nextInt(3)) {
+            int[] positions = randomPositions(random);
+            first.add(id, positions, positions.length);
+            direct.add(id, positions, positions.length);
+            expected.put(id, positions);
+        }
+
+        int offset = 1000;
+        for (int id = 0; id < 300; id += 1 + random.nextInt(3)) {
+            int[] positions = randomPositions(random);
+            second.add(id, positions, positions.length);
+            direct.add(id + offset, positions, positions.length);
+            expected.put(id + offset, positions);
+        }
+
+        first.appendAll(second, offset);
+
+        assertEquals(direct, first);
+        assertMatches(expected, first);
+        assertEquals(expected.ceilingKey(offset + 150), new PostingList.Cursor(first).advance(offset + 150));
+    }
+
+    @Test
+    void appendAllRejectsOverlappingOrMismatchedLists() {
+        PostingList list = new PostingList();
+        list.add(10, 1);
+
+        PostingList other = new PostingList();
+        other.add(5, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> list.appendAll(other, 0));
+        assertThrows(IllegalArgumentException.class, () -> list.appendAll(new PostingList(true), 100));
+        assertArrayEquals(new int[] {10}, list.toArray());
+    }
+
+    @Test
+    void encodedBytesReadBackAsTheSameList() throws IOException {
+        Random random = new Random(5);
+        PostingList list = new PostingList(true);
+
+        for (int id = 0; id < 2000; id += 1 + random.nextInt(5)) {
+            int[] positions = randomPositions(random);
+            list.add(id, positions, positions.length);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        list.writeTo(new DataOutputStream(bytes));
+        PostingList copy = new PostingList(true, bytes.toByteArray(), list.size(), list.getLastId());
+
+        assertEquals(list.getNumBytes(), bytes.size());
+        assertEquals(list, copy);
+        assertArrayEquals(list.toArray(), copy.toArray());
+        assertTrue(copy.contains(list.getLastId()));
+    }
+
+    @Test
+    void invalidEntriesAreRejected() {
+        PostingList list = new PostingList();
+
+        assertThrows(IllegalArgumentException.class, () -> list.add(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> list.add(1, 0));
+        assertThrows(IllegalStateException.class, () -> list.add(1, new int[] {0}, 1));
+        assertThrows(IllegalArgumentException.class, () -> new PostingList(true).add(1, new int[] {3, 3}, 2));
+        assertFalse(list.remove(7));
+        assertTrue(list.isEmpty());
+    }
+
+    /**
+     * Checks every accessor of a list against the entries it should hold
+     * @param expected the IDs mapped to their positions, or to a one-element array of the frequency
+     * @param list the list
+     */
+    private static void assertMatches(TreeMap<Integer, int[]> expected, PostingList list) {
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected.isEmpty() ? -1 : expected.lastKey(), list.getLastId());
+        assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(), list.toArray());
+
+        PostingList.Cursor cursor = new PostingList.Cursor(list);
+
+        for (Map.Entry<Integer, int[]> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), cursor.next());
+            assertTrue(list.contains(entry.getKey()));
+
+            if (list.isPositional()) {
+                assertArrayEquals(entry.getValue(), Arrays.copyOf(cursor.positions(), cursor.frequency()));
+            } else {
+                assertEquals(entry.getValue()[0], cursor.frequency());
+            }
+        }
+
+        assertEquals(PostingList.Cursor.END, cursor.next());
+    }
+
+    /**
+     * Generates a few ascending positions, some far enough apart to need multi-byte gaps
+     * @param random the source of randomness
+     * @return the positions
+     */
+    private static int[] randomPositions(Random random) {
+        int[] positions = new int[1 + random.nextInt(4)];
+        int position = -1;
+
+        for (int i = 0; i < positions.length; i++) {
+            position += 1 + random.nextInt(random.nextBoolean() ? 10 : 500);
+            positions[i] = position;
+        }
+
+        return positions;
+    }
+}
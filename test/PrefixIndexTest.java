@@ -0,0 +1,255 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class PrefixIndexTest {
+    @Test
+    void completionsMatchSortingEveryTerm() {
+        Random random = new Random(1);
+        TermDictionary dictionary = randomDictionary(3000, random);
+        long[] weights = new long[dictionary.size()];
+
+        for (int id = 0; id < weights.length; id++) {
+            // Few distinct weights, so ties are broken alphabetically, and some terms are never suggested
+            weights[id] = random.nextInt(6) - 1;
+        }
+
+        PrefixIndex index = new PrefixIndex(dictionary, weights);
+        assertEquals(dictionary.size(), index.size());
+
+        for (int i = 0; i < 2000; i++) {
+            String prefix = randomWord(random, 0, 4);
+            int numResults = random.nextInt(5) == 0 ? dictionary.size() : random.nextInt(12);
+
+            List<String> expected = allTerms(dictionary).stream()
+                    .filter(term -> term.startsWith(prefix) && weights[dictionary.find(term)] > 0)
+                    .sorted(Comparator.comparingLong((String term) -> -weights[dictionary.find(term)]).thenComparing(Comparator.naturalOrder()))
+                    .limit(numResults)
+                    .collect(Collectors.toList());
+
+            assertEquals(expected, index.complete(prefix, numResults), prefix);
+        }
+
+        assertEquals(List.of(), index.complete("zzz", 5));
+        assertEquals(List.of(), index.complete("a", 0));
+        assertThrows(IllegalArgumentException.class, () -> new PrefixIndex(dictionary, new long[dictionary.size() - 1]));
+    }
+
+    @Test
+    void engineCompletionsFollowSongCountsAndPlays() {
+        ArrayList<Song> songs = new CatalogGenerator(300, 4, 400, 12).toList();
+        SearchEngine engine = new SearchEngine(songs, 64);
+        HashMap<String, Long> songCounts = new HashMap<>();
+        HashMap<String, Long> plays = new HashMap<>();
+
+        for (Song song : songs) {
+            for (String word : words(song)) {
+                songCounts.merge(word, 1L, Long::sum);
+                plays.merge(word, song.getPlays(), Long::sum);
+            }
+        }
+
+        for (String prefix : List.of("", "b", "ba", "ka", "mo", "zu", "Ta ")) {
+            String normalized = prefix.trim().toLowerCase();
+
+            for (boolean byPlays : new boolean[] {false, true}) {
+                HashMap<String, Long> weights = byPlays ? plays : songCounts;
+                List<String> expected = weights.keySet().stream()
+                        .filter(word -> word.startsWith(normalized) && weights.get(word) > 0)
+                        .sorted(Comparator.comparingLong((String word) -> -weights.get(word)).thenComparing(Comparator.naturalOrder()))
+                        .limit(10)
+                        .collect(Collectors.toList());
+
+                assertEquals(expected, engine.complete(prefix, 10, byPlays), prefix);
+            }
+        }
+    }
+
+    @Test
+    void findWithinMatchesTheDistanceToEveryTerm() {
+        Random random = new Random(2);
+        TermDictionary dictionary = randomDictionary(3000, random);
+        PrefixIndex index = new PrefixIndex(dictionary, new long[dictionary.size()]);
+        List<String> sorted = allTerms(dictionary).stream().sorted().collect(Collectors.toList());
+
+        for (int i = 0; i < 500; i++) {
+            String word = randomWord(random, 0, 9);
+            int maxDistance = random.nextInt(4);
+
+            List<String> expected = sorted.stream()
+                    .filter(term -> distance(word, term) <= maxDistance)
+                    .collect(Collectors.toList());
+            List<String> found = new ArrayList<>();
+            for (int id : index.findWithin(word, maxDistance)) {
+                found.add(dictionary.getTerm(id));
+            }
+
+            assertEquals(expected, found, word + " within " + maxDistance);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> index.findWithin("abc", -1));
+    }
+
+    @Test
+    void fuzzySearchMatchesAScanOfEveryWord() {
+        Random random = new Random(3);
+        ArrayList<Song> songs = new CatalogGenerator(400, 6, 300, 10).toList();
+        SearchEngine engine = new SearchEngine(songs, 64);
+        ArrayList<HashSet<String>> songWords = new ArrayList<>();
+        ArrayList<String> vocabulary = new ArrayList<>();
+
+        for (Song song : songs) {
+            songWords.add(words(song));
+            vocabulary.addAll(songWords.get(songWords.size() - 1));
+        }
+
+        for (int i = 0; i < 300; i++) {
+            ArrayList<String> required = new ArrayList<>();
+            for (int w = 1 + random.nextInt(2); w > 0; w--) {
+                required.add(misspell(vocabulary.get(random.nextInt(vocabulary.size())), random));
+            }
+
+            // A misspelling can turn into a stop word, which the query drops
+            String query = String.join(" ", required);
+            List<String> parsed = Query.parse(query).getClauses().get(0).getRequired();
+            int maxDistance = random.nextInt(3);
+            ArrayList<Integer> expected = new ArrayList<>();
+
+            for (int s = 0; s < songs.size() && !parsed.isEmpty(); s++) {
+                boolean matches = true;
+
+                for (String word : parsed) {
+                    int allowed = Math.min(maxDistance, word.length() <= 2 ? 0 : word.length() <= 5 ? 1 : 2);
+                    matches &= songWords.get(s).stream().anyMatch(candidate -> distance(word, candidate) <= allowed);
+                }
+
+                if (matches) {
+                    expected.add(songs.get(s).getId());
+                }
+            }
+
+            int[] expectedIds = expected.stream().mapToInt(Integer::intValue).sorted().toArray();
+            assertArrayEquals(expectedIds, engine.searchIds(Query.parse(query), maxDistance), query + " within " + maxDistance);
+            assertEquals(expected.size(), engine.searchFuzzy(query, maxDistance).getSize());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> engine.searchFuzzy("word", 3));
+    }
+
+    /**
+     * Returns the indexed words of a song, the way the engine tokenizes its fields
+     */
+    private static HashSet<String> words(Song song) {
+        HashSet<String> words = new HashSet<>();
+        Tokenizer tokenizer = new Tokenizer();
+
+        for (String field : List.of(song.getLyrics(), song.getName(), song.getAlbum(), Integer.toString(song.getReleaseYear()))) {
+            tokenizer.reset(field);
+
+            while (tokenizer.next()) {
+                if (!SearchEngine.stopWordsContains(tokenizer.getToken())) {
+                    words.add(tokenizer.getToken());
+                }
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Applies up to two random single-letter edits to a word
+     */
+    private static String misspell(String word, Random random) {
+        StringBuilder misspelled = new StringBuilder(word);
+
+        for (int edits = random.nextInt(3); edits > 0; edits--) {
+            int at = random.nextInt(misspelled.length() + 1);
+            char letter = (char) ('a' + random.nextInt(26));
+
+            switch (random.nextInt(3)) {
+                case 0 -> misspelled.insert(at, letter);
+                case 1 -> {
+                    if (at < misspelled.length() && misspelled.length() > 1) {
+                        misspelled.deleteCharAt(at);
+                    }
+                }
+                default -> {
+                    if (at < misspelled.length()) {
+                        misspelled.setCharAt(at, letter);
+                    }
+                }
+            }
+        }
+
+        return misspelled.toString();
+    }
+
+    /**
+     * Computes the Levenshtein distance between two words with the full table
+     */
+    private static int distance(String word1, String word2) {
+        int[][] table = new int[word1.length() + 1][word2.length() + 1];
+
+        for (int i = 0; i <= word1.length(); i++) {
+            for (int j = 0; j <= word2.length(); j++) {
+                if (i == 0 || j == 0) {
+                    table[i][j] = i + j;
+                } else {
+                    int substitute = table[i - 1][j - 1] + (word1.charAt(i - 1) == word2.charAt(j - 1) ? 0 : 1);
+                    table[i][j] = Math.min(substitute, Math.min(table[i - 1][j], table[i][j - 1]) + 1);
+                }
+            }
+        }
+
+        return table[word1.length()][word2.length()];
+    }
+
+    /**
+     * Builds a dictionary of random words over a small alphabet, so many of them share prefixes
+     */
+    private static TermDictionary randomDictionary(int numWords, Random random) {
+        TermDictionary dictionary = new TermDictionary(numWords);
+
+        for (int i = 0; i < numWords; i++) {
+            dictionary.add(randomWord(random, 1, 8));
+        }
+
+        return dictionary;
+    }
+
+    /**
+     * Makes a word of random letters from a to d
+     */
+    private static String randomWord(Random random, int minLength, int maxLength) {
+        StringBuilder word = new StringBuilder();
+
+        for (int i = minLength + random.nextInt(maxLength - minLength + 1); i > 0; i--) {
+            word.append((char) ('a' + random.nextInt(4)));
+        }
+
+        return word.toString();
+    }
+
+    /**
+     * Returns every term of a dictionary
+     */
+    private static List<String> allTerms(TermDictionary dictionary) {
+        ArrayList<String> terms = new ArrayList<>();
+
+        for (int id = 0; id < dictionary.size(); id++) {
+            terms.add(dictionary.getTerm(id));
+        }
+
+        return terms;
+    }
+}
@@ -0,0 +1,226 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RankedSearchTest {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    @Test
+    void rarerWordsCountMore() {
+        ArrayList<Song> songs = new ArrayList<>(Arrays.asList(
+                song("Common", "river"),
+                song("Rare", "canyon"),
+                song("Filler One", "river"),
+                song("Filler Two", "river")));
+        SearchEngine engine = new SearchEngine(songs, 64);
+
+        assertEquals(List.of("Rare", "Common", "Filler One", "Filler Two"), names(engine.searchRanked("river canyon", 10)));
+    }
+
+    @Test
+    void repeatsCountWithDiminishingReturns() {
+        ArrayList<Song> songs = new ArrayList<>(Arrays.asList(
+                song("Once", "echo valley stone"),
+                song("Thrice", "echo echo echo"),
+                song("Twice", "echo echo stone")));
+        SearchEngine engine = new SearchEngine(songs, 64);
+
+        assertEquals(List.of("Thrice", "Twice", "Once"), names(engine.searchRanked("echo", 10)));
+    }
+
+    @Test
+    void shorterSongsRankAboveLongerOnesWithTheSameCount() {
+        ArrayList<Song> songs = new ArrayList<>(Arrays.asList(
+                song("Long", "meadow grass wind cloud rain sun sky"),
+                song("Short", "meadow grass"),
+                song("Medium", "meadow grass wind cloud")));
+        SearchEngine engine = new SearchEngine(songs, 64);
+
+        assertEquals(List.of("Short", "Medium", "Long"), names(engine.searchRanked("meadow", 10)));
+    }
+
+    @Test
+    void exclusionsRemoveSongsAndLimitsKeepTheBest() {
+        ArrayList<Song> songs = new ArrayList<>(Arrays.asList(
+                song("Plain", "harbor"),
+                song("Stormy", "harbor harbor storm"),
+                song("Calm", "harbor harbor")));
+        SearchEngine engine = new SearchEngine(songs, 64);
+
+        assertEquals(List.of("Calm", "Plain"), names(engine.searchRanked("harbor -storm", 10)));
+        assertEquals(List.of("Calm", "Plain"), names(engine.searchRanked("harbor NOT storm", 10)));
+        assertEquals(List.of("Calm"), names(engine.searchRanked("harbor -storm", 1)));
+        assertEquals(List.of(), names(engine.searchRanked("harbor", 0)));
+        assertEquals(List.of(), names(engine.searchRanked("unknown", 10)));
+    }
+
+    @Test
+    void rankingAgreesWithScoringEverySong() {
+        Random random = new Random(8);
+        ArrayList<Song> catalog = new CatalogGenerator(500, 21, 300, 25).toList();
+        SearchEngine engine = new SearchEngine(catalog, 64);
+
+        for (int i = 0; i < 50; i++) {
+            engine.removeSong(catalog.remove(random.nextInt(catalog.size())));
+        }
+
+        ArrayList<List<String>> fields = new ArrayList<>();
+        for (Song song : catalog) {
+            fields.add(tokens(song));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            ArrayList<String> words = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+
+            for (int w = 0, numWords = 1 + random.nextInt(4); w < numWords; w++) {
+                String word = pickWord(fields, random);
+                words.add(word);
+                text.append(word).append(' ');
+            }
+
+            String excluded = random.nextInt(3) == 0 ? pickWord(fields, random) : null;
+            if (excluded != null) {
+                text.append('-').append(excluded);
+            }
+
+            List<Song> expected = rank(catalog, fields, words, excluded);
+            int numResults = random.nextInt(3) == 0 ? expected.size() + 5 : 1 + random.nextInt(20);
+            List<Song> actual = engine.searchRanked(text.toString(), numResults);
+
+            assertEquals(ids(expected.subList(0, Math.min(numResults, expected.size()))), ids(actual), text.toString());
+        }
+    }
+
+    /**
+     * Scores every song with BM25 the way the engine defines it and sorts them,
+     * best first with ties going to the smaller ID
+     * @param songs the indexed songs
+     * @param fields each song's words, one list per field in indexing order
+     * @param words the query words, in query order
+     * @param excluded a word whose songs are dropped, or null
+     * @return the matching songs, best first
+     */
+    private static List<Song> rank(List<Song> songs, List<List<String>> fields, List<String> words, String excluded) {
+        int numSongs = songs.size();
+        HashMap<String, Integer> documentFrequency = new HashMap<>();
+        long[] totalFieldLengths = new long[SearchEngine.NUM_FIELDS];
+
+        for (int s = 0; s < numSongs; s++) {
+            List<String> songWords = fields.get(s);
+            songWords.stream().distinct().filter(w -> !w.equals("|")).forEach(w -> documentFrequency.merge(w, 1, Integer::sum));
+
+            int field = 0;
+            for (String word : songWords) {
+                if (word.equals("|")) {
+                    field++;
+                } else {
+                    totalFieldLengths[field]++;
+                }
+            }
+        }
+
+        double averageLength = 0;
+        for (long total : totalFieldLengths) {
+            averageLength += (double) total / Math.max(numSongs, 1);
+        }
+
+        IdentityHashMap<Song, Double> scores = new IdentityHashMap<>();
+        for (int s = 0; s < numSongs; s++) {
+            List<String> songWords = fields.get(s);
+            int length = (int) songWords.stream().filter(w -> !w.equals("|")).count();
+
+            if (excluded != null && songWords.contains(excluded)) {
+                continue;
+            }
+
+            double lengthNorm = K1 * (1 - B + B * length / Math.max(averageLength, 1));
+            double score = 0;
+            boolean matched = false;
+
+            for (String word : words) {
+                int frequency = (int) songWords.stream().filter(word::equals).count();
+
+                if (frequency > 0) {
+                    int df = documentFrequency.get(word);
+                    double weight = Math.log(1 + (numSongs - df + 0.5) / (df + 0.5));
+                    score += weight * frequency * (K1 + 1) / (frequency + lengthNorm);
+                    matched = true;
+                }
+            }
+
+            if (matched) {
+                scores.put(songs.get(s), score);
+            }
+        }
+
+        ArrayList<Song> ranked = new ArrayList<>(scores.keySet());
+        ranked.sort(Comparator.comparingDouble((Song song) -> -scores.get(song)).thenComparingInt(Song::getId));
+        return ranked;
+    }
+
+    /**
+     * Returns the indexed words of a song, with "|" marking the end of each field
+     */
+    private static List<String> tokens(Song song) {
+        ArrayList<String> tokens = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer();
+
+        for (String field : List.of(song.getLyrics(), song.getName(), song.getAlbum(), Integer.toString(song.getReleaseYear()))) {
+            tokenizer.reset(field);
+
+            while (tokenizer.next()) {
+                if (!SearchEngine.stopWordsContains(tokenizer.getToken())) {
+                    tokens.add(tokenizer.getToken());
+                }
+            }
+
+            tokens.add("|");
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Picks a random indexed word of a random song
+     */
+    private static String pickWord(List<List<String>> fields, Random random) {
+        List<String> words = fields.get(random.nextInt(fields.size()));
+        String word = words.get(random.nextInt(words.size()));
+
+        return word.equals("|") ? pickWord(fields, random) : word;
+    }
+
+    private static Song song(String name, String lyrics) {
+        return new Song(name, 180, 2020, "Album", 1, lyrics);
+    }
+
+    private static List<Integer> ids(List<Song> songs) {
+        ArrayList<Integer> ids = new ArrayList<>();
+
+        for (Song song : songs) {
+            ids.add(song.getId());
+        }
+
+        return ids;
+    }
+
+    private static List<String> names(List<Song> songs) {
+        ArrayList<String> names = new ArrayList<>();
+
+        for (Song song : songs) {
+            names.add(song.getName());
+        }
+
+        return names;
+    }
+}
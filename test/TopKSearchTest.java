@@ -0,0 +1,96 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class TopKSearchTest {
+    @Test
+    void heapKeepsTheBestAndBreaksTiesBySmallerId() {
+        TopKHeap heap = new TopKHeap(3);
+        heap.offer(5, 1.0);
+        heap.offer(9, 4.0);
+        heap.offer(2, 4.0);
+        heap.offer(7, 0.5);
+        heap.offer(1, 1.0);
+
+        assertArrayEquals(new int[] {2, 9, 1}, heap.toSortedIds());
+        assertEquals(3, heap.size());
+        assertArrayEquals(new int[0], new TopKHeap(0).toSortedIds());
+        assertThrows(IllegalArgumentException.class, () -> new TopKHeap(-1));
+    }
+
+    @Test
+    void heapAgreesWithSortingEverything() {
+        Random random = new Random(2);
+
+        for (int round = 0; round < 200; round++) {
+            int n = random.nextInt(300);
+            int k = random.nextInt(40);
+            double[] scores = new double[n];
+            TopKHeap heap = new TopKHeap(k);
+
+            for (int id = 0; id < n; id++) {
+                // Few distinct scores, so most of the work is breaking ties
+                scores[id] = random.nextInt(10);
+                heap.offer(id, scores[id]);
+            }
+
+            int[] expected = sortedIds(n, id -> scores[id]);
+            assertArrayEquals(Arrays.copyOf(expected, Math.min(k, n)), heap.toSortedIds());
+        }
+    }
+
+    @Test
+    void topResultsArePrefixesOfTheFullOrder() {
+        Random random = new Random(3);
+        ArrayList<Song> catalog = new CatalogGenerator(600, 13, 80, 10).toList();
+        SearchEngine engine = new SearchEngine(catalog, 64);
+
+        for (int i = 0; i < 60; i++) {
+            engine.removeSong(catalog.remove(random.nextInt(catalog.size())));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Song source = catalog.get(random.nextInt(catalog.size()));
+            String[] lyrics = source.getLyrics().split(" ");
+            String query = lyrics[random.nextInt(lyrics.length)] + (random.nextBoolean() ? "" : " OR " + lyrics[random.nextInt(lyrics.length)]);
+            int numResults = random.nextInt(4) == 0 ? catalog.size() + 1 : random.nextInt(25);
+
+            int[] matches = engine.searchIds(Query.parse(query));
+            assertEquals(expected(engine, matches, Song::getPlays, numResults), engine.searchMostPlayed(query, numResults), query);
+            assertEquals(expected(engine, matches, Song::getReleaseYear, numResults), engine.searchMostRecent(query, numResults), query);
+        }
+    }
+
+    /**
+     * Sorts every match by a property, highest first with ties going to the smaller ID,
+     * and keeps the first results
+     */
+    private static List<Song> expected(SearchEngine engine, int[] matches, ToDoubleFunction<Song> property, int numResults) {
+        ArrayList<Song> songs = new ArrayList<>();
+        for (int id : matches) {
+            songs.add(engine.getSong(id));
+        }
+
+        songs.sort(Comparator.comparingDouble((Song song) -> -property.applyAsDouble(song)).thenComparingInt(Song::getId));
+        return songs.subList(0, Math.min(numResults, songs.size()));
+    }
+
+    /**
+     * Returns the IDs from 0 to n - 1, highest score first with ties going to the smaller ID
+     */
+    private static int[] sortedIds(int n, ToDoubleFunction<Integer> score) {
+        return IntStream.range(0, n).boxed()
+                .sorted(Comparator.comparingDouble((Integer id) -> -score.applyAsDouble(id)).thenComparingInt(id -> id))
+                .mapToInt(Integer::intValue).toArray();
+    }
+}